@@ -0,0 +1,96 @@
+package com.santander.bankbranch.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.dto.CompactDistanceResponse;
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.index.BranchDistances;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spatial index result to response bytes for the full distance search: the v1 map of names to
+ * "distancia = x.xx" against the v2 ids and distances, each as JSON and as CBOR. Payload sizes
+ * are logged once per fork by setUp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DistanceEncodingBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceEncodingBenchmark.class);
+
+    @Param({"1000", "100000"})
+    private int agencias;
+
+    private BranchDistances resultados;
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        resultados = new BranchDistances(agencias);
+        double distancia = 0;
+        for (int i = 0; i < agencias; i++) {
+            distancia += random.nextDouble() * 0.01;
+            resultados.add(random.nextInt(10 * agencias) + 1, distancia);
+        }
+        json = new ObjectMapper();
+        cbor = new CBORMapper();
+
+        logger.info("{} branches: v1 JSON {} bytes, v1 CBOR {} bytes, v2 JSON {} bytes, v2 CBOR {} bytes",
+                agencias, v1Json().length, v1Cbor().length, v2Json().length, v2Cbor().length);
+    }
+
+    @Benchmark
+    public byte[] v1Json() throws Exception {
+        return json.writeValueAsBytes(v1());
+    }
+
+    @Benchmark
+    public byte[] v1Cbor() throws Exception {
+        return cbor.writeValueAsBytes(v1());
+    }
+
+    @Benchmark
+    public byte[] v2Json() throws Exception {
+        return json.writeValueAsBytes(v2());
+    }
+
+    @Benchmark
+    public byte[] v2Cbor() throws Exception {
+        return cbor.writeValueAsBytes(v2());
+    }
+
+    // Same steps as BankBranchService for each representation
+    private DistanceBankBranchResponse v1() {
+        BranchDistanceMap mapa = new BranchDistanceMap(resultados.size());
+        for (int i = 0; i < resultados.size(); i++) {
+            mapa.add(resultados.name(i), resultados.distance(i));
+        }
+        return new DistanceBankBranchResponse(mapa);
+    }
+
+    private CompactDistanceResponse v2() {
+        return new CompactDistanceResponse(0.0, 0.0, resultados.ids(), resultados.distances());
+    }
+}
@@ -0,0 +1,115 @@
+package com.santander.bankbranch.benchmark;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.dto.DistanciaResponse;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import com.santander.bankbranch.service.BankBranchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping of BankBranchService (processarResultadosAgencias*, DistanceFormat for the
+ * NDJSON lines) on synthetic native-query rows, with the repository replaced by a stub and
+ * the spatial index and result cache turned off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DistanceMappingBenchmark {
+
+    private static final double POS_X = 12.5;
+    private static final double POS_Y = -7.25;
+
+    @Param({"10", "1000"})
+    private int linhas;
+
+    private BankBranchService bankBranchService;
+
+    @Setup
+    public void setUp() {
+        List<Object[]> resultados = gerarLinhas(linhas);
+
+        BankBranchRepository repository = (BankBranchRepository) Proxy.newProxyInstance(
+                BankBranchRepository.class.getClassLoader(),
+                new Class<?>[]{BankBranchRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findNearbyBankBranches", "findNearbyBankBranchesLimits" -> resultados;
+                    case "streamNearbyBankBranches" -> resultados.stream();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        bankBranchService = new BankBranchService();
+        ReflectionTestUtils.setField(bankBranchService, "bankBranchRepository", repository);
+        ReflectionTestUtils.setField(bankBranchService, "spatialIndex", new BankBranchSpatialIndex());
+        ReflectionTestUtils.setField(bankBranchService, "distanceQueryCache",
+                new DistanceQueryCache(false, 4, 1, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(bankBranchService, "indiceHabilitado", false);
+        // The service times every search with Timer.start(meterRegistry)
+        ReflectionTestUtils.setField(bankBranchService, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public DistanceBankBranchResponse findBankBranches() {
+        return bankBranchService.findBankBranches(POS_X, POS_Y);
+    }
+
+    @Benchmark
+    public DistanciaResponse findNearbyBankBranches() {
+        return bankBranchService.findNearbyBankBranches(POS_X, POS_Y);
+    }
+
+    @Benchmark
+    public long streamBankBranches(Blackhole blackhole) {
+        return bankBranchService.streamBankBranches(POS_X, POS_Y, blackhole::consume);
+    }
+
+    /**
+     * Rows shaped like the native distance queries: id, name, pos_x, pos_y, creation_date,
+     * distancia, ordered by distance.
+     */
+    private static List<Object[]> gerarLinhas(int total) {
+        Random random = new Random(42);
+        Timestamp criacao = Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 0, 0));
+        List<Object[]> resultados = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            long id = i + 1;
+            double posX = -180.0 + random.nextDouble() * 360.0;
+            double posY = -90.0 + random.nextDouble() * 180.0;
+            resultados.add(new Object[]{
+                    id,
+                    "AGENCIA_" + id,
+                    posX,
+                    posY,
+                    criacao,
+                    BankBranchSpatialIndex.distance(POS_X, POS_Y, posX, posY)
+            });
+        }
+        resultados.sort((a, b) -> Double.compare((Double) a[5], (Double) b[5]));
+        return resultados;
+    }
+}
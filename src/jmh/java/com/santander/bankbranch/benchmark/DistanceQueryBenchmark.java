@@ -0,0 +1,188 @@
+package com.santander.bankbranch.benchmark;
+
+import com.santander.bankbranch.BankBranchApiApplication;
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import com.santander.bankbranch.repository.JdbcBankBranchReadRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Native distance queries of BankBranchRepository against the embedded H2 database of the
+ * application, seeded with {@code agencias} branches spread uniformly over the valid range.
+ * Each parameter value starts its own application context in its own fork. The jdbc*
+ * benchmarks run the same queries through JdbcBankBranchReadRepository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DistanceQueryBenchmark {
+
+    private static final int LINHAS_POR_LOTE = 10_000;
+    private static final int PONTOS_DE_CONSULTA = 64;
+
+    @Param({"1000", "100000", "1000000"})
+    private int agencias;
+
+    private ConfigurableApplicationContext contexto;
+    private BankBranchRepository bankBranchRepository;
+    private JdbcBankBranchReadRepository jdbcReadRepository;
+    private TransactionTemplate transacaoLeitura;
+    private double[][] pontos;
+    private int proximoPonto;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = new SpringApplicationBuilder(BankBranchApiApplication.class)
+                .profiles("test")
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--bankbranch.index.enabled=false",
+                        "--bankbranch.leitura.implementacao=jdbc",
+                        "--logging.level.org.springframework.security=WARN",
+                        "--logging.level.org.springframework.security.oauth2=WARN",
+                        "--logging.level.org.springdoc=WARN");
+        bankBranchRepository = contexto.getBean(BankBranchRepository.class);
+        jdbcReadRepository = contexto.getBean(JdbcBankBranchReadRepository.class);
+        transacaoLeitura = new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class));
+        transacaoLeitura.setReadOnly(true);
+
+        popular(contexto.getBean(JdbcTemplate.class));
+
+        Random random = new Random(7);
+        pontos = new double[PONTOS_DE_CONSULTA][];
+        for (int i = 0; i < pontos.length; i++) {
+            pontos[i] = new double[]{-180.0 + random.nextDouble() * 360.0, -90.0 + random.nextDouble() * 180.0};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    /** Query behind /desafio/distancia?k=10. */
+    @Benchmark
+    public List<Object[]> findNearbyBankBranchesLimits10() {
+        double[] ponto = proximoPonto();
+        return bankBranchRepository.findNearbyBankBranchesLimits(ponto[0], ponto[1], 10);
+    }
+
+    /** Query behind /desafio/distancia without bounds on the DistanciaResponse path (cap of 1000). */
+    @Benchmark
+    public List<Object[]> findNearbyBankBranchesLimits1000() {
+        double[] ponto = proximoPonto();
+        return bankBranchRepository.findNearbyBankBranchesLimits(ponto[0], ponto[1], 1000);
+    }
+
+    @Benchmark
+    public List<Object[]> findNearbyBankBranchesWithinRadius() {
+        double[] ponto = proximoPonto();
+        return bankBranchRepository.findNearbyBankBranchesWithinRadius(ponto[0], ponto[1], 5.0, 1000);
+    }
+
+    /** Proximity check run by every registration. */
+    @Benchmark
+    public boolean existsNearbyBankBranches() {
+        double[] ponto = proximoPonto();
+        return bankBranchRepository.existsNearbyBankBranches(ponto[0], ponto[1], GridCell.DISTANCIA_MINIMA_ENTRE_AGENCIAS);
+    }
+
+    /** Full ordered result of /desafio/distancia when the spatial index is not in use. */
+    @Benchmark
+    public List<Object[]> findNearbyBankBranches() {
+        double[] ponto = proximoPonto();
+        return bankBranchRepository.findNearbyBankBranches(ponto[0], ponto[1]);
+    }
+
+    /** Same rows as findNearbyBankBranches, consumed as they are read (NDJSON path). */
+    @Benchmark
+    public Long streamNearbyBankBranches() {
+        double[] ponto = proximoPonto();
+        return transacaoLeitura.execute(status -> {
+            try (Stream<Object[]> linhas = bankBranchRepository.streamNearbyBankBranches(ponto[0], ponto[1])) {
+                return linhas.count();
+            }
+        });
+    }
+
+    @Benchmark
+    public BranchDistanceMap jdbcFindNearbyBankBranchesLimits10() {
+        double[] ponto = proximoPonto();
+        return jdbcReadRepository.findNearbyBankBranchesLimits(ponto[0], ponto[1], 10);
+    }
+
+    @Benchmark
+    public BranchDistanceMap jdbcFindNearbyBankBranchesLimits1000() {
+        double[] ponto = proximoPonto();
+        return jdbcReadRepository.findNearbyBankBranchesLimits(ponto[0], ponto[1], 1000);
+    }
+
+    @Benchmark
+    public BranchDistanceMap jdbcFindNearbyBankBranchesWithinRadius() {
+        double[] ponto = proximoPonto();
+        return jdbcReadRepository.findNearbyBankBranchesWithinRadius(ponto[0], ponto[1], 5.0, 1000);
+    }
+
+    @Benchmark
+    public BranchDistanceMap jdbcFindNearbyBankBranches() {
+        double[] ponto = proximoPonto();
+        return jdbcReadRepository.findNearbyBankBranches(ponto[0], ponto[1]);
+    }
+
+    private double[] proximoPonto() {
+        double[] ponto = pontos[proximoPonto];
+        proximoPonto = (proximoPonto + 1) % pontos.length;
+        return ponto;
+    }
+
+    private void popular(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+        Timestamp criacao = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> lote = new ArrayList<>(LINHAS_POR_LOTE);
+
+        for (long id = 1; id <= agencias; id++) {
+            double posX = -180.0 + random.nextDouble() * 360.0;
+            double posY = -90.0 + random.nextDouble() * 180.0;
+            lote.add(new Object[]{id, BankBranch.nomeDaAgencia(id), posX, posY, criacao, GridCell.of(posX, posY)});
+
+            if (lote.size() == LINHAS_POR_LOTE || id == agencias) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO bankbranch (id, name, pos_x, pos_y, creation_date, grid_cell) VALUES (?, ?, ?, ?, ?, ?)",
+                        lote);
+                lote.clear();
+            }
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+}
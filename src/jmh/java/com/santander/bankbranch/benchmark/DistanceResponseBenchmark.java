@@ -0,0 +1,86 @@
+package com.santander.bankbranch.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.model.BankBranch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows to JSON bytes for a /desafio/distancia response: the original pipeline (a BankBranch
+ * per row, String.format and a LinkedHashMap) against BranchDistanceMap and its serializer.
+ * Run with {@code -Djmh.args="DistanceResponseBenchmark -prof gc"} to see gc.alloc.rate.norm
+ * (bytes allocated per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DistanceResponseBenchmark {
+
+    @Param({"10", "1000"})
+    private int linhas;
+
+    private List<Object[]> resultados;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Timestamp criacao = Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 0, 0));
+        resultados = new ArrayList<>(linhas);
+        for (int i = 0; i < linhas; i++) {
+            long id = i + 1;
+            resultados.add(new Object[]{id, BankBranch.nomeDaAgencia(id), random.nextDouble() * 100,
+                    random.nextDouble() * 100, criacao, random.nextDouble() * 400});
+        }
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public byte[] original() throws Exception {
+        Map<String, String> agencias = new LinkedHashMap<>();
+        for (Object[] resultado : resultados) {
+            BankBranch agencia = BankBranch.builder()
+                    .id(((Number) resultado[0]).longValue())
+                    .name((String) resultado[1])
+                    .posX(((Number) resultado[2]).doubleValue())
+                    .posY(((Number) resultado[3]).doubleValue())
+                    .creationDate(((Timestamp) resultado[4]).toLocalDateTime())
+                    .build();
+            Double distancia = ((Number) resultado[5]).doubleValue();
+            agencias.put(agencia.getName(), String.format("distancia = %.2f", distancia).replace(",", "."));
+        }
+        return objectMapper.writeValueAsBytes(new DistanceBankBranchResponse(agencias));
+    }
+
+    @Benchmark
+    public byte[] compacto() throws Exception {
+        BranchDistanceMap agencias = new BranchDistanceMap(resultados.size());
+        for (Object[] resultado : resultados) {
+            agencias.add((String) resultado[1], ((Number) resultado[5]).doubleValue());
+        }
+        return objectMapper.writeValueAsBytes(new DistanceBankBranchResponse(agencias));
+    }
+}
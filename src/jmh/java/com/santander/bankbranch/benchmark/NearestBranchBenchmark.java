@@ -0,0 +1,90 @@
+package com.santander.bankbranch.benchmark;
+
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchDistances;
+import com.santander.bankbranch.index.ColumnarBranchStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single nearest branch (k = 1) of BankBranchSpatialIndex from the 2-d tree against the
+ * nearest-branch raster, with {@code agencias} branches spread uniformly over the valid range.
+ * setUp logs the raster build time and the memory of both indexes once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class NearestBranchBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearestBranchBenchmark.class);
+
+    private static final int PONTOS_DE_CONSULTA = 1024;
+
+    @Param({"100000", "1000000"})
+    private int agencias;
+
+    @Param({"0.5"})
+    private double resolucao;
+
+    private BankBranchSpatialIndex arvore;
+    private BankBranchSpatialIndex raster;
+    private double[][] pontos;
+    private int proximoPonto;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        ColumnarBranchStore carregadas = new ColumnarBranchStore(agencias);
+        for (int i = 0; i < agencias; i++) {
+            carregadas.add(i + 1, random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90, 0L);
+        }
+        arvore = new BankBranchSpatialIndex();
+        arvore.load(carregadas.copy());
+        long inicio = System.nanoTime();
+        raster = new BankBranchSpatialIndex(resolucao);
+        raster.load(carregadas);
+        long construcao = System.nanoTime() - inicio;
+
+        pontos = new double[PONTOS_DE_CONSULTA][];
+        for (int i = 0; i < PONTOS_DE_CONSULTA; i++) {
+            pontos[i] = new double[]{random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90};
+        }
+        logger.info("{} branches: tree {} KB, tree and raster {} KB, loaded with raster in {} ms",
+                agencias, arvore.memoryBytes() / 1024, raster.memoryBytes() / 1024, construcao / 1_000_000);
+    }
+
+    @Benchmark
+    public BranchDistances tree() {
+        double[] ponto = proximo();
+        return arvore.findNearest(ponto[0], ponto[1], 1, Double.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public BranchDistances raster() {
+        double[] ponto = proximo();
+        return raster.findNearest(ponto[0], ponto[1], 1, Double.POSITIVE_INFINITY);
+    }
+
+    private double[] proximo() {
+        double[] ponto = pontos[proximoPonto];
+        proximoPonto = (proximoPonto + 1) % PONTOS_DE_CONSULTA;
+        return ponto;
+    }
+}
@@ -0,0 +1,154 @@
+package com.santander.bankbranch.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.santander.bankbranch.exception.GlobalExceptionHandler;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control of /desafio: each request to /desafio/{name} (and below it) takes a slot of
+ * the ConcurrencyLimiter with that name, and is answered straight away with {@code status} and
+ * Retry-After when none is free, before it reaches a Tomcat handler or the connection pool.
+ *
+ * The slot is released when the response completes, including async ones (NDJSON streams and
+ * write-behind registrations), with the time the request took.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private static final String PREFIXO = "/desafio/";
+
+    private final List<ConcurrencyLimiter> limitadores;
+    private final HttpStatus status;
+    private final String retryAfter;
+    private final ObjectMapper objectMapper;
+
+    public AdmissionControlFilter(List<ConcurrencyLimiter> limitadores, HttpStatus status, Duration retryAfter,
+                                  ObjectMapper objectMapper) {
+        if (status != HttpStatus.TOO_MANY_REQUESTS && status != HttpStatus.SERVICE_UNAVAILABLE) {
+            throw new IllegalArgumentException("The admission rejection status must be 429 or 503");
+        }
+        this.limitadores = List.copyOf(limitadores);
+        this.status = status;
+        // Retry-After takes whole seconds
+        this.retryAfter = Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return limitadorDe(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ConcurrencyLimiter limitador = limitadorDe(request);
+        if (!limitador.tryAcquire()) {
+            rejeitar(response, limitador);
+            return;
+        }
+
+        Liberacao liberacao = new Liberacao(limitador, response);
+        boolean assincrono = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(liberacao);
+                assincrono = true;
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            liberacao.liberar(true);
+            throw e;
+        } finally {
+            if (!assincrono) {
+                liberacao.liberar(false);
+            }
+        }
+    }
+
+    private ConcurrencyLimiter limitadorDe(HttpServletRequest request) {
+        String caminho = request.getRequestURI().substring(request.getContextPath().length());
+        if (!caminho.startsWith(PREFIXO)) {
+            return null;
+        }
+        for (ConcurrencyLimiter limitador : limitadores) {
+            String grupo = PREFIXO + limitador.name();
+            if (caminho.equals(grupo) || caminho.startsWith(grupo + "/")) {
+                return limitador;
+            }
+        }
+        return null;
+    }
+
+    private void rejeitar(HttpServletResponse response, ConcurrencyLimiter limitador) throws IOException {
+        logger.debug("Shedding a request to {}{}: {} in flight, limit {}",
+                PREFIXO, limitador.name(), limitador.inFlight(), limitador.limit());
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new GlobalExceptionHandler.ErrorResponse(
+                LocalDateTime.now(),
+                status.value(),
+                status.getReasonPhrase(),
+                String.format("Too many concurrent requests to %s%s, retry after %s s", PREFIXO, limitador.name(), retryAfter)
+        ));
+    }
+
+    /** Releases the slot once, from the request thread or from the async listener. */
+    private static final class Liberacao implements AsyncListener {
+
+        private final ConcurrencyLimiter limitador;
+        private final HttpServletResponse response;
+        private final long inicio = System.nanoTime();
+        private final AtomicBoolean liberada = new AtomicBoolean();
+
+        private Liberacao(ConcurrencyLimiter limitador, HttpServletResponse response) {
+            this.limitador = limitador;
+            this.response = response;
+        }
+
+        private void liberar(boolean falhou) {
+            if (liberada.compareAndSet(false, true)) {
+                limitador.release(System.nanoTime() - inicio, falhou || response.getStatus() >= 500);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            liberar(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            liberar(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            liberar(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Re-registered by the container on a new cycle; nothing to do
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.santander.bankbranch.admission;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/admission: state of every admission limiter, or of one with /actuator/admission/{name}.
+ * Read-only: limits are set through bankbranch.admissao.* only.
+ */
+@Endpoint(id = "admission")
+public class AdmissionEndpoint {
+
+    private final List<ConcurrencyLimiter> limitadores;
+
+    public AdmissionEndpoint(List<ConcurrencyLimiter> limitadores) {
+        this.limitadores = List.copyOf(limitadores);
+    }
+
+    @ReadOperation
+    public Map<String, LimiterState> limiters() {
+        Map<String, LimiterState> estados = new LinkedHashMap<>();
+        limitadores.forEach(limitador -> estados.put(limitador.name(), limitador.state()));
+        return estados;
+    }
+
+    /** null, and so 404, for an unknown name. */
+    @ReadOperation
+    public LimiterState limiter(@Selector String name) {
+        ConcurrencyLimiter limitador = buscar(name);
+        return limitador == null ? null : limitador.state();
+    }
+
+    private ConcurrencyLimiter buscar(String nome) {
+        return limitadores.stream()
+                .filter(limitador -> limitador.name().equals(nome))
+                .findFirst()
+                .orElse(null);
+    }
+}
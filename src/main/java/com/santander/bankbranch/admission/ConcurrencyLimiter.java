@@ -0,0 +1,115 @@
+package com.santander.bankbranch.admission;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the requests of one endpoint group in flight at once; the ones over the limit are
+ * turned away instead of queueing behind the others.
+ *
+ * In {@code fixed} mode the limit never changes. In {@code aimd} mode it adapts to the latency
+ * of the completed requests: a request slower than {@code latenciaAlvo}, or one that failed
+ * with a server error, cuts the limit by 10%, while fast requests raise it by one for every
+ * "limit" of them completed with at least half of the limit in use. Both stay between
+ * {@code minimo} and {@code maximo}.
+ *
+ * A slow burst cuts the limit once, not once per request: after a cut, the next one waits for
+ * as many completions as the limit had before it, so the requests already in flight then, which
+ * were admitted under the old limit, cannot compound it.
+ */
+public final class ConcurrencyLimiter {
+
+    public static final String FIXED = "fixed";
+    public static final String AIMD = "aimd";
+
+    private static final double FATOR_REDUCAO = 0.9;
+
+    private final String nome;
+    private final boolean adaptativo;
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaAlvoNanos;
+    private final AtomicInteger emCurso = new AtomicInteger();
+    private final LongAdder aceitas = new LongAdder();
+    private final LongAdder rejeitadas = new LongAdder();
+    // Fractional so additive increases can build up; written under the monitor only
+    private volatile double limite;
+    // aimd completions so far, and the count from which another cut is allowed; under the monitor
+    private long liberacoes;
+    private long proximoCorte;
+
+    public ConcurrencyLimiter(String nome, String modo, int limiteInicial, int minimo, int maximo, Duration latenciaAlvo) {
+        String modoNormalizado = modo.toLowerCase(Locale.ROOT);
+        if (!FIXED.equals(modoNormalizado) && !AIMD.equals(modoNormalizado)) {
+            throw new IllegalArgumentException("Unknown limiter mode for " + nome + ": " + modo + " (fixed or aimd)");
+        }
+        if (minimo < 1 || minimo > limiteInicial || limiteInicial > maximo) {
+            throw new IllegalArgumentException("Limits of " + nome + " must satisfy 1 <= minimum <= initial <= maximum");
+        }
+        this.nome = nome;
+        this.adaptativo = AIMD.equals(modoNormalizado);
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.latenciaAlvoNanos = latenciaAlvo.toNanos();
+        this.limite = limiteInicial;
+    }
+
+    public String name() {
+        return nome;
+    }
+
+    /** Takes a slot when one is free; every successful call must be followed by release(). */
+    public boolean tryAcquire() {
+        while (true) {
+            int atual = emCurso.get();
+            if (atual >= limit()) {
+                rejeitadas.increment();
+                return false;
+            }
+            if (emCurso.compareAndSet(atual, atual + 1)) {
+                aceitas.increment();
+                return true;
+            }
+        }
+    }
+
+    /** Frees the slot of a request that took {@code latenciaNanos}; {@code falhou} for server errors. */
+    public void release(long latenciaNanos, boolean falhou) {
+        int emCursoAntes = emCurso.getAndDecrement();
+        if (!adaptativo) {
+            return;
+        }
+        synchronized (this) {
+            liberacoes++;
+            if (falhou || latenciaNanos > latenciaAlvoNanos) {
+                if (liberacoes >= proximoCorte) {
+                    // At most limit() were in flight, this one included, all admitted before the cut
+                    proximoCorte = liberacoes + limit();
+                    limite = Math.max(minimo, limite * FATOR_REDUCAO);
+                }
+            } else if (emCursoAntes * 2 >= limite) {
+                // An idle endpoint says nothing about how much more it could take
+                limite = Math.min(maximo, limite + 1 / limite);
+            }
+        }
+    }
+
+    public int limit() {
+        return (int) limite;
+    }
+
+    public int inFlight() {
+        return emCurso.get();
+    }
+
+    public long rejected() {
+        return rejeitadas.sum();
+    }
+
+    public LimiterState state() {
+        return new LimiterState(adaptativo ? AIMD : FIXED, limit(), inFlight(), minimo, maximo,
+                Duration.ofNanos(latenciaAlvoNanos).toMillis(), aceitas.sum(), rejected());
+    }
+}
@@ -0,0 +1,14 @@
+package com.santander.bankbranch.admission;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record LimiterState(
+    @JsonProperty("mode") String mode,
+    @JsonProperty("limit") int limit,
+    @JsonProperty("inFlight") int inFlight,
+    @JsonProperty("minimum") int minimum,
+    @JsonProperty("maximum") int maximum,
+    @JsonProperty("targetLatencyMs") long targetLatencyMs,
+    @JsonProperty("accepted") long accepted,
+    @JsonProperty("rejected") long rejected
+) {}
@@ -0,0 +1,57 @@
+package com.santander.bankbranch.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Single-flight loading on a Caffeine {@link AsyncCache} where the value is computed by the
+ * calling thread, outside of any lock.
+ *
+ * A synchronous {@code Cache.get} runs the loader inside {@code ConcurrentHashMap.compute},
+ * i.e. inside a {@code synchronized} block. Up to JDK 23 a virtual thread that blocks there
+ * (JDBC, HTTP) pins its carrier thread. Here the map only receives an empty future, the first
+ * caller completes it and every other caller for the same key waits on the future instead.
+ * Failed futures are dropped by Caffeine, so errors are never cached; callers waiting on a
+ * failed load get the loader's exception.
+ */
+public final class CallerRunsLoader {
+
+    private CallerRunsLoader() {
+    }
+
+    public static <K, V> V get(AsyncCache<K, V> cache, K chave, Function<? super K, ? extends V> carregar) {
+        CompletableFuture<V> novo = new CompletableFuture<>();
+        CompletableFuture<V> atual = cache.get(chave, (k, executor) -> novo);
+
+        if (atual == novo) {
+            try {
+                novo.complete(carregar.apply(chave));
+            } catch (Throwable e) {
+                // Caffeine logs a warning with the stack trace for any other kind of failure
+                novo.completeExceptionally(new FalhaNoCarregamento(e));
+            }
+        }
+
+        try {
+            return atual.join();
+        } catch (FalhaNoCarregamento e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (e.getCause() instanceof Error erro) {
+                throw erro;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class FalhaNoCarregamento extends CancellationException {
+
+        FalhaNoCarregamento(Throwable causa) {
+            initCause(causa);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.santander.bankbranch.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.event.BankBranchRegisteredEvent;
+import com.santander.bankbranch.event.BankBranchRemovedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded cache of /desafio/distancia responses keyed on the position rounded to
+ * {@code precisao} decimal places. The response for a key is computed at the rounded
+ * position, so every caller mapped to that key gets the same answer.
+ *
+ * Keys carry the data version, which is bumped after every committed registration or
+ * removal, so a search that started before a commit can never be served after it.
+ */
+@Component
+public class DistanceQueryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceQueryCache.class);
+
+    private final boolean habilitado;
+    private final double escala;
+    private final AsyncCache<Chave, DistanceBankBranchResponse> cache;
+    private final AtomicLong versao = new AtomicLong();
+    // Tells versions of different runs apart, since the counter starts over on restart
+    private final String instancia = Long.toString(System.currentTimeMillis(), 36);
+
+    public DistanceQueryCache(@Value("${bankbranch.cache.distancia.enabled:true}") boolean habilitado,
+                              @Value("${bankbranch.cache.distancia.precisao:4}") int precisao,
+                              @Value("${bankbranch.cache.distancia.tamanho-maximo:10000}") long tamanhoMaximo,
+                              MeterRegistry meterRegistry) {
+        this.habilitado = habilitado;
+        this.escala = Math.pow(10, precisao);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "distancia");
+    }
+
+    public boolean isEnabled() {
+        return habilitado;
+    }
+
+    /**
+     * Returns the cached response for the rounded position, computing it with
+     * {@code busca} on a miss. Concurrent misses on the same key share one computation.
+     */
+    public DistanceBankBranchResponse get(double posX, double posY,
+                                          BiFunction<Double, Double, DistanceBankBranchResponse> busca) {
+        long x = Math.round(posX * escala);
+        long y = Math.round(posY * escala);
+        return CallerRunsLoader.get(cache, new Chave(versao.get(), x, y), chave -> busca.apply(x / escala, y / escala));
+    }
+
+    public long version() {
+        return versao.get();
+    }
+
+    /** Identifies the committed branch set: changes on every registration, removal and restart. */
+    public String versionTag() {
+        return instancia + "-" + versao.get();
+    }
+
+    /**
+     * The position a /desafio/distancia response is computed at: rounded to {@code precisao}
+     * decimal places while the cache is enabled, exact otherwise.
+     */
+    public String positionKey(double posX, double posY) {
+        if (!habilitado) {
+            return posX + "," + posY;
+        }
+        return Math.round(posX * escala) + "," + Math.round(posY * escala);
+    }
+
+    // Runs after the spatial index has seen the new branch
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener
+    public void onBankBranchRegistered(BankBranchRegisteredEvent event) {
+        invalidar();
+        logger.debug("Distance cache invalidated after registration of branch {}", event.bankBranch().getId());
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener
+    public void onBankBranchRemoved(BankBranchRemovedEvent event) {
+        invalidar();
+        logger.debug("Distance cache invalidated after removal of branch {}", event.bankBranch().getId());
+    }
+
+    private void invalidar() {
+        versao.incrementAndGet();
+        cache.synchronous().invalidateAll();
+    }
+
+    private record Chave(long versao, long posX, long posY) {}
+}
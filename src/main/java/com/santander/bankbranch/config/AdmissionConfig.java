@@ -0,0 +1,91 @@
+package com.santander.bankbranch.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.santander.bankbranch.admission.AdmissionControlFilter;
+import com.santander.bankbranch.admission.AdmissionEndpoint;
+import com.santander.bankbranch.admission.ConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Admission control of /desafio, enabled with {@code bankbranch.admissao.enabled=true}: one
+ * ConcurrencyLimiter for /desafio/cadastrar and one for /desafio/distancia, each configured
+ * under bankbranch.admissao.{name}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankbranch.admissao.enabled", havingValue = "true")
+public class AdmissionConfig {
+
+    private static final String PREFIXO = "bankbranch.admissao.";
+
+    @Bean
+    public ConcurrencyLimiter cadastrarLimiter(Environment environment) {
+        return limitador(environment, "cadastrar", 16, 500);
+    }
+
+    @Bean
+    public ConcurrencyLimiter distanciaLimiter(Environment environment) {
+        return limitador(environment, "distancia", 64, 250);
+    }
+
+    // After Spring Security, so requests without a valid token are turned away without taking a slot
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            List<ConcurrencyLimiter> limitadores,
+            ObjectMapper objectMapper,
+            @Value("${bankbranch.admissao.status:503}") int status,
+            @Value("${bankbranch.admissao.retry-after:1s}") Duration retryAfter) {
+        FilterRegistrationBean<AdmissionControlFilter> registro = new FilterRegistrationBean<>(
+                new AdmissionControlFilter(limitadores, HttpStatus.valueOf(status), retryAfter, objectMapper));
+        registro.addUrlPatterns("/desafio/*");
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registro;
+    }
+
+    @Bean
+    public AdmissionEndpoint admissionEndpoint(List<ConcurrencyLimiter> limitadores) {
+        return new AdmissionEndpoint(limitadores);
+    }
+
+    @Bean
+    public MeterBinder admissionMetrics(List<ConcurrencyLimiter> limitadores) {
+        return registry -> limitadores.forEach(limitador -> {
+            Gauge.builder("bankbranch.admission.limit", limitador, ConcurrencyLimiter::limit)
+                    .description("Requests allowed in flight at once")
+                    .tag("endpoint", limitador.name())
+                    .register(registry);
+            Gauge.builder("bankbranch.admission.inflight", limitador, ConcurrencyLimiter::inFlight)
+                    .description("Requests in flight")
+                    .tag("endpoint", limitador.name())
+                    .register(registry);
+            FunctionCounter.builder("bankbranch.admission.rejections", limitador, ConcurrencyLimiter::rejected)
+                    .description("Requests turned away because the limit was reached")
+                    .tag("endpoint", limitador.name())
+                    .register(registry);
+        });
+    }
+
+    private static ConcurrencyLimiter limitador(Environment environment, String nome, int limitePadrao,
+                                                long latenciaAlvoPadraoMs) {
+        String prefixo = PREFIXO + nome + ".";
+        int limite = environment.getProperty(prefixo + "limite", Integer.class, limitePadrao);
+        return new ConcurrencyLimiter(nome,
+                environment.getProperty(prefixo + "modo", ConcurrencyLimiter.AIMD),
+                limite,
+                environment.getProperty(prefixo + "limite-minimo", Integer.class, Math.min(limite, 2)),
+                environment.getProperty(prefixo + "limite-maximo", Integer.class, Math.max(limite, 200)),
+                environment.getProperty(prefixo + "latencia-alvo", Duration.class, Duration.ofMillis(latenciaAlvoPadraoMs)));
+    }
+}
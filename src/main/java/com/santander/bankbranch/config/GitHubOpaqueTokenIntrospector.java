@@ -0,0 +1,113 @@
+package com.santander.bankbranch.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.santander.bankbranch.cache.CallerRunsLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Validates bearer tokens against the GitHub user endpoint.
+ *
+ * Successful validations are cached for {@code ttl} under the SHA-256 of the token (the
+ * raw token is never kept), so a token revoked on GitHub keeps working here until its
+ * entry expires. Concurrent requests with the same uncached token wait for a single
+ * call to GitHub, made without holding a lock so a virtual thread is not pinned while it
+ * waits. Failed validations are not cached.
+ */
+class GitHubOpaqueTokenIntrospector implements OpaqueTokenIntrospector {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitHubOpaqueTokenIntrospector.class);
+
+    private final String introspectionUri;
+    private final RestTemplate restTemplate;
+    private final AsyncCache<String, OAuth2AuthenticatedPrincipal> tokensValidados;
+
+    GitHubOpaqueTokenIntrospector(String introspectionUri, RestTemplate restTemplate, Duration ttl, long tamanhoMaximo) {
+        this.introspectionUri = introspectionUri;
+        this.restTemplate = restTemplate;
+        this.tokensValidados = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(tamanhoMaximo)
+                .recordStats()
+                .buildAsync();
+    }
+
+    AsyncCache<String, OAuth2AuthenticatedPrincipal> cache() {
+        return tokensValidados;
+    }
+
+    @Override
+    public OAuth2AuthenticatedPrincipal introspect(String token) {
+        String hash = hash(token);
+        // The first caller validates on its own thread, other callers wait for its result
+        return CallerRunsLoader.get(tokensValidados, hash, chave -> validar(token, chave));
+    }
+
+    private OAuth2AuthenticatedPrincipal validar(String token, String hash) {
+        logger.info("Validating token {}...", hash.substring(0, 12));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.set("Accept", "application/json");
+
+        HttpEntity<?> entity = new HttpEntity<>(headers);
+        ResponseEntity<Map> response = restTemplate.exchange(
+                introspectionUri,
+                HttpMethod.GET,
+                entity,
+                Map.class
+        );
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            logger.error("Token validation failed with status: {}", response.getStatusCode());
+            throw new IllegalArgumentException("Token validation failed: " + response.getStatusCode());
+        }
+
+        Map<String, Object> attributes = response.getBody();
+        if (attributes == null || !attributes.containsKey("login")) {
+            logger.error("Invalid user info response: {}", attributes);
+            throw new IllegalArgumentException("Invalid user info response");
+        }
+
+        logger.info("Token validated successfully for user: {}", attributes.get("login"));
+        return new OAuth2AuthenticatedPrincipal() {
+            @Override
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+
+            @Override
+            public java.util.Collection<? extends org.springframework.security.core.GrantedAuthority> getAuthorities() {
+                return java.util.Collections.emptyList();
+            }
+
+            @Override
+            public String getName() {
+                return (String) attributes.get("login");
+            }
+        };
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
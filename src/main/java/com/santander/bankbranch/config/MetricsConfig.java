@@ -0,0 +1,50 @@
+package com.santander.bankbranch.config;
+
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.metrics.data.DefaultRepositoryTagsProvider;
+import org.springframework.boot.actuate.metrics.data.RepositoryTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Spring Boot already times every repository call as spring.data.repository.invocations
+     * (tags repository, method, state, exception); this adds the same outcome tag used by the
+     * service timers.
+     */
+    @Bean
+    public RepositoryTagsProvider repositoryTagsProvider() {
+        DefaultRepositoryTagsProvider padrao = new DefaultRepositoryTagsProvider();
+        return invocation -> Tags.of(padrao.repositoryTags(invocation))
+                .and(Tag.of("outcome", invocation.getResult() == null
+                        ? "unknown"
+                        : invocation.getResult().getState().name().toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Size of the in-memory branch store, to size nodes before loading millions of branches. It also
+     * stands for the branch count, which is not read from the table so scrapes never run a COUNT(*).
+     */
+    @Bean
+    public MeterBinder spatialIndexMetrics(BankBranchSpatialIndex spatialIndex) {
+        return registry -> {
+            Gauge.builder("bankbranch.index.branches", spatialIndex, BankBranchSpatialIndex::size)
+                    .description("Branches held by the spatial index")
+                    .strongReference(true)
+                    .register(registry);
+            Gauge.builder("bankbranch.index.memory", spatialIndex, BankBranchSpatialIndex::memoryBytes)
+                    .description("Heap taken by the spatial index columns and tree")
+                    .baseUnit("bytes")
+                    .strongReference(true)
+                    .register(registry);
+        };
+    }
+}
@@ -1,20 +1,25 @@
 package com.santander.bankbranch.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
 import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.Executor;
 
 @Configuration
 public class SecurityConfig {
@@ -22,13 +27,17 @@ public class SecurityConfig {
     private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, OpaqueTokenIntrospector opaqueTokenIntrospector) throws Exception {
         logger.info("--- OAuth2 SecurityFilterChain is being configured ---");
         http
                 .authorizeHttpRequests(authorize -> authorize
                         // Allow public access to Swagger UI and OpenAPI endpoints
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                         .requestMatchers("/").permitAll()
+                        // Actuator shares the application port; only health is public, Prometheus scrapes with a token
+                        .requestMatchers("/actuator/health").permitAll()
+                        // No actuator write operation is open to API callers, whatever their token
+                        .requestMatchers(HttpMethod.POST, "/actuator/**").denyAll()
                         .requestMatchers("/desafio/**").authenticated()
                         .anyRequest().authenticated()
                 )
@@ -37,63 +46,37 @@ public class SecurityConfig {
                         .failureUrl("/login?error=true")
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2
-                        .opaqueToken(opaque -> opaque.introspector(opaqueTokenIntrospector()))
+                        .opaqueToken(opaque -> opaque.introspector(opaqueTokenIntrospector))
                 )
                 .csrf(csrf -> csrf.disable());
         return http.build();
     }
 
     @Bean
-    public OpaqueTokenIntrospector opaqueTokenIntrospector() {
-        return new GitHubOpaqueTokenIntrospector();
-    }
-
-    private static class GitHubOpaqueTokenIntrospector implements OpaqueTokenIntrospector {
-        private final RestTemplate restTemplate = new RestTemplate();
-
-        @Override
-        public OAuth2AuthenticatedPrincipal introspect(String token) {
-            logger.info("Validating token: {}", token);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(token);
-            headers.set("Accept", "application/json");
-
-            HttpEntity<?> entity = new HttpEntity<>(headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    "https://api.github.com/user",
-                    HttpMethod.GET,
-                    entity,
-                    Map.class
-            );
-
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                logger.error("Token validation failed with status: {}", response.getStatusCode());
-                throw new IllegalArgumentException("Token validation failed: " + response.getStatusCode());
-            }
-
-            Map<String, Object> attributes = response.getBody();
-            if (attributes == null || !attributes.containsKey("login")) {
-                logger.error("Invalid user info response: {}", attributes);
-                throw new IllegalArgumentException("Invalid user info response");
-            }
-
-            logger.info("Token validated successfully for user: {}", attributes.get("login"));
-            return new OAuth2AuthenticatedPrincipal() {
-                @Override
-                public Map<String, Object> getAttributes() {
-                    return attributes;
-                }
-
-                @Override
-                public java.util.Collection<? extends org.springframework.security.core.GrantedAuthority> getAuthorities() {
-                    return java.util.Collections.emptyList();
-                }
-
-                @Override
-                public String getName() {
-                    return (String) attributes.get("login");
-                }
-            };
+    public OpaqueTokenIntrospector opaqueTokenIntrospector(
+            RestTemplateBuilder restTemplateBuilder,
+            MeterRegistry meterRegistry,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) ObjectProvider<Executor> applicationTaskExecutor,
+            @Value("${spring.security.oauth2.resourceserver.opaque-token.introspection-uri:https://api.github.com/user}") String introspectionUri,
+            @Value("${bankbranch.security.introspection.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${bankbranch.security.introspection.read-timeout:3s}") Duration readTimeout,
+            @Value("${bankbranch.security.introspection.cache-ttl:5m}") Duration cacheTtl,
+            @Value("${bankbranch.security.introspection.cache-tamanho-maximo:10000}") long cacheTamanhoMaximo,
+            @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais) {
+        if (threadsVirtuais) {
+            // The calling (virtual) thread blocks on the response; the client's own async work runs on the
+            // application task executor, which uses virtual threads in this mode and is closed by Spring on shutdown
+            Executor executor = applicationTaskExecutor.getObject();
+            restTemplateBuilder = restTemplateBuilder.requestFactoryBuilder(ClientHttpRequestFactoryBuilder.jdk()
+                    .withHttpClientCustomizer(client -> client.executor(executor)));
         }
+        RestTemplate restTemplate = restTemplateBuilder
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .build();
+        GitHubOpaqueTokenIntrospector introspector =
+                new GitHubOpaqueTokenIntrospector(introspectionUri, restTemplate, cacheTtl, cacheTamanhoMaximo);
+        CaffeineCacheMetrics.monitor(meterRegistry, introspector.cache(), "tokens");
+        return introspector;
     }
-}
\ No newline at end of file
+}
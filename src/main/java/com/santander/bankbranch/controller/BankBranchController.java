@@ -1,9 +1,20 @@
 package com.santander.bankbranch.controller;
 
+import com.santander.bankbranch.dto.CompactDistanceResponse;
+import com.santander.bankbranch.dto.DistanceBatchRequest;
+import com.santander.bankbranch.dto.DistanceBatchResponse;
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
 import com.santander.bankbranch.dto.RegisterBankBranchRequest;
 import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.dto.DistanceBankBranchLine;
 import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.dto.DistanciaResponse;
 import com.santander.bankbranch.service.BankBranchService;
+import com.santander.bankbranch.service.BankBranchWriteBehindService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,14 +25,26 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/desafio")
@@ -33,6 +56,13 @@ public class BankBranchController {
     @Autowired
     private BankBranchService bankBranchService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Only present with bankbranch.cadastro.write-behind.enabled=true
+    @Autowired(required = false)
+    private BankBranchWriteBehindService writeBehindService;
+
     @PostMapping("/cadastrar")
     @Operation(summary = "Register a new bank branch", description = "Creates a bank branch with given coordinates (posX, posY)")
     @ApiResponses({
@@ -61,15 +91,81 @@ public class BankBranchController {
         }
     }
 
+    @PostMapping("/cadastrar/async")
+    @Operation(summary = "Register a new bank branch through the write-behind queue", description = "Queues the registration and answers once the group "
+            + "holding it is committed. Only available with bankbranch.cadastro.write-behind.enabled=true")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Bank branch registered successfully",
+                    content = @Content(schema = @Schema(implementation = RegisterBankBranchResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid coordinates or a branch too close to this position"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token"),
+            @ApiResponse(responseCode = "404", description = "Write-behind registration is disabled"),
+            @ApiResponse(responseCode = "503", description = "Registration queue is full, retry after the Retry-After header")
+    })
+    public CompletableFuture<ResponseEntity<RegisterBankBranchResponse>> bankBranchRegisterAsync(
+            @Valid @RequestBody @Parameter(description = "Request body with branch coordinates", required = true)
+            RegisterBankBranchRequest request) {
+        if (writeBehindService == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        try {
+            return writeBehindService.submit(request)
+                    .thenApply(response -> response.id() != null
+                            ? ResponseEntity.status(HttpStatus.CREATED).body(response)
+                            : ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response))
+                    // Queued registrations failed on shutdown get the same answer as a full queue
+                    .exceptionally(erro -> {
+                        if (erro.getCause() instanceof RejectedExecutionException recusa) {
+                            return indisponivel(request, recusa);
+                        }
+                        throw erro instanceof CompletionException conclusao ? conclusao : new CompletionException(erro);
+                    });
+        } catch (IllegalArgumentException e) {
+            RegisterBankBranchResponse errorResponse = new RegisterBankBranchResponse(
+                    null, null, request.posX(), request.posY(), null, "Error: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(indisponivel(request, e));
+        }
+    }
+
+    private static ResponseEntity<RegisterBankBranchResponse> indisponivel(RegisterBankBranchRequest request,
+                                                                           RejectedExecutionException e) {
+        RegisterBankBranchResponse errorResponse = new RegisterBankBranchResponse(
+                null, null, request.posX(), request.posY(), null, "Error: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+
+    @PostMapping("/cadastrar/lote")
+    @Operation(summary = "Register a batch of bank branches", description = "Registers several branches in one transaction. Each item is checked against the existing branches "
+            + "and the other items of the batch, and gets its own result")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Per-item registration results",
+                    content = @Content(schema = @Schema(implementation = RegisterBankBranchBatchResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized batch"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token")
+    })
+    public ResponseEntity<RegisterBankBranchBatchResponse> bankBranchBatchRegister(
+            @RequestBody @Parameter(description = "Request body with the coordinates of each branch", required = true)
+            List<RegisterBankBranchRequest> requests) {
+        RegisterBankBranchBatchResponse response = bankBranchService.registerBankBranches(requests);
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/distancia")
-    @Operation(summary = "Find bank branches near coordinates", description = "Returns a list of bank branches near the specified posX and posY coordinates")
+    @Operation(summary = "Find bank branches near coordinates", description = "Returns a list of bank branches near the specified posX and posY coordinates. "
+            + "When k or raio is given the search is bounded and the response also carries the closest branch and the total found. "
+            + "Responses carry an ETag that changes when a branch is registered; send it back in If-None-Match to get 304")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "List of nearby branches",
-                    content = @Content(schema = @Schema(implementation = DistanceBankBranchResponse.class))),
+                    content = @Content(schema = @Schema(oneOf = {DistanceBankBranchResponse.class, DistanciaResponse.class}))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid coordinates"),
             @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token")
     })
-    public ResponseEntity<DistanceBankBranchResponse> findBankBranches(
+    public ResponseEntity<?> findBankBranches(
             @Parameter(description = "X coordinate (longitude, -180 to 180)", required = true)
             @RequestParam @NotNull(message = "Position X is mandatory")
             @DecimalMin(value = "-180.0", message = "Position X must be greater than or equal to -180")
@@ -80,10 +176,35 @@ public class BankBranchController {
             @RequestParam @NotNull(message = "Position Y is mandatory")
             @DecimalMin(value = "-90.0", message = "Position Y must be greater than or equal to -90")
             @DecimalMax(value = "90.0", message = "Position Y must be less than or equal to 90")
-            Double posY) {
+            Double posY,
+
+            @Parameter(description = "Maximum number of branches to return (k nearest)")
+            @RequestParam(required = false)
+            @Min(value = 1, message = "k must be greater than or equal to 1")
+            Integer k,
+
+            @Parameter(description = "Maximum distance from the position (radius)")
+            @RequestParam(required = false)
+            @DecimalMin(value = "0.0", message = "raio must be greater than or equal to 0")
+            Double raio,
+
+            WebRequest webRequest) {
         try {
+            // Answered with 304 from the data version alone, before any search runs
+            String etag = bankBranchService.distanceETag(posX, posY, k, raio);
+            // The same ETag covers the JSON and the CBOR body, so caches must key on Accept too
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT).build();
+            }
+
+            // Clients and proxies keep the response but revalidate it on every use
+            if (k != null || raio != null) {
+                DistanciaResponse response = bankBranchService.findNearbyBankBranches(posX, posY, k, raio);
+                return ResponseEntity.ok().cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT).body(response);
+            }
+
             DistanceBankBranchResponse response = bankBranchService.findBankBranches(posX, posY);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT).body(response);
         } catch (IllegalArgumentException e) {
             // Return a DistanceBankBranchResponse with an error message in the agencias map
             DistanceBankBranchResponse errorResponse = new DistanceBankBranchResponse(
@@ -92,4 +213,87 @@ public class BankBranchController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/distancia/lote")
+    @Operation(summary = "Find the nearest bank branches of several points", description = "Returns, for every point and in request order, "
+            + "the k nearest branches (1000 when k is not given) in the same shape as /desafio/distancia with k. All points are answered from the same branch set")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Nearest branches per point",
+                    content = @Content(schema = @Schema(implementation = DistanceBatchResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized batch, invalid point or k"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token")
+    })
+    public ResponseEntity<DistanceBatchResponse> findBankBranchesBatch(
+            @RequestBody @Parameter(description = "Points to search and the optional number of branches per point", required = true)
+            DistanceBatchRequest request) {
+        return ResponseEntity.ok(bankBranchService.findNearbyBankBranchesBatch(request));
+    }
+
+    @GetMapping(value = "/distancia/v2", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    @Operation(summary = "Find bank branches near coordinates (compact)", description = "Every branch ordered by distance as parallel arrays of ids "
+            + "and numeric distances, without names or formatted text. JSON by default, CBOR with Accept: application/cbor")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ids and distances of the branches, nearest first",
+                    content = {@Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = CompactDistanceResponse.class)),
+                            @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE, schema = @Schema(implementation = CompactDistanceResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid coordinates"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token")
+    })
+    public ResponseEntity<CompactDistanceResponse> findBankBranchesCompact(
+            @Parameter(description = "X coordinate (longitude, -180 to 180)", required = true)
+            @RequestParam @NotNull(message = "Position X is mandatory")
+            @DecimalMin(value = "-180.0", message = "Position X must be greater than or equal to -180")
+            @DecimalMax(value = "180.0", message = "Position X must be less than or equal to 180")
+            Double posX,
+
+            @Parameter(description = "Y coordinate (latitude, -90 to 90)", required = true)
+            @RequestParam @NotNull(message = "Position Y is mandatory")
+            @DecimalMin(value = "-90.0", message = "Position Y must be greater than or equal to -90")
+            @DecimalMax(value = "90.0", message = "Position Y must be less than or equal to 90")
+            Double posY) {
+        return ResponseEntity.ok(bankBranchService.findBankBranchesCompact(posX, posY));
+    }
+
+    @GetMapping(value = "/distancia", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream bank branches ordered by distance", description = "Writes one JSON object per line (nome, distancia) as branches are read, "
+            + "so memory use does not depend on the number of branches. Selected with Accept: application/x-ndjson")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Branches ordered by distance, one per line",
+                    content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = DistanceBankBranchLine.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid coordinates"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token")
+    })
+    public ResponseEntity<StreamingResponseBody> streamBankBranches(
+            @Parameter(description = "X coordinate (longitude, -180 to 180)", required = true)
+            @RequestParam @NotNull(message = "Position X is mandatory")
+            @DecimalMin(value = "-180.0", message = "Position X must be greater than or equal to -180")
+            @DecimalMax(value = "180.0", message = "Position X must be less than or equal to 180")
+            Double posX,
+
+            @Parameter(description = "Y coordinate (latitude, -90 to 90)", required = true)
+            @RequestParam @NotNull(message = "Position Y is mandatory")
+            @DecimalMin(value = "-90.0", message = "Position Y must be greater than or equal to -90")
+            @DecimalMax(value = "90.0", message = "Position Y must be less than or equal to 90")
+            Double posY) {
+        // Let the generator buffer lines instead of flushing the socket after every branch
+        ObjectWriter writer = objectMapper.writerFor(DistanceBankBranchLine.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                bankBranchService.streamBankBranches(posX, posY, linha -> {
+                    try {
+                        writer.writeValue(generator, linha);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
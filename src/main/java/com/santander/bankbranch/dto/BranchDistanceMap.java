@@ -0,0 +1,107 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The {@code agencias} map of the distance responses (branch name to
+ * {@code "distancia = 12.35"}), kept as parallel arrays of names and primitive distances in
+ * insertion order. The text of a distance is only produced when the map is read through the
+ * {@link java.util.Map} interface; JSON is written straight from the arrays by
+ * {@link BranchDistanceMapSerializer}.
+ *
+ * Filled once by the service with {@link #add(String, double)}; the Map view is read-only.
+ * Lookups by key are linear, which is fine for its callers (tests and logs).
+ */
+@JsonSerialize(using = BranchDistanceMapSerializer.class)
+public final class BranchDistanceMap extends AbstractMap<String, String> {
+
+    private String[] nomes;
+    private double[] distancias;
+    private int tamanho;
+
+    public BranchDistanceMap(int capacidade) {
+        nomes = new String[Math.max(capacidade, 1)];
+        distancias = new double[nomes.length];
+    }
+
+    public void add(String nome, double distancia) {
+        if (tamanho == nomes.length) {
+            nomes = Arrays.copyOf(nomes, tamanho * 2);
+            distancias = Arrays.copyOf(distancias, tamanho * 2);
+        }
+        nomes[tamanho] = nome;
+        distancias[tamanho] = distancia;
+        tamanho++;
+    }
+
+    public String name(int indice) {
+        return nomes[indice];
+    }
+
+    public double distance(int indice) {
+        return distancias[indice];
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    @Override
+    public boolean containsKey(Object chave) {
+        return indiceDe(chave) >= 0;
+    }
+
+    @Override
+    public String get(Object chave) {
+        int indice = indiceDe(chave);
+        return indice < 0 ? null : DistanceFormat.format(distancias[indice]);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<>() {
+                    private int proximo;
+
+                    @Override
+                    public boolean hasNext() {
+                        return proximo < tamanho;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (proximo >= tamanho) {
+                            throw new NoSuchElementException();
+                        }
+                        int indice = proximo++;
+                        return new SimpleImmutableEntry<>(nomes[indice], DistanceFormat.format(distancias[indice]));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return tamanho;
+            }
+        };
+    }
+
+    private int indiceDe(Object chave) {
+        for (int i = 0; i < tamanho; i++) {
+            if (nomes[i].equals(chave)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,40 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link BranchDistanceMap} as the same JSON object a {@code Map<String, String>}
+ * produces, formatting each distance into one reused char buffer instead of a String.
+ */
+public class BranchDistanceMapSerializer extends StdSerializer<BranchDistanceMap> {
+
+    public BranchDistanceMapSerializer() {
+        super(BranchDistanceMap.class);
+    }
+
+    @Override
+    public boolean isEmpty(SerializerProvider provider, BranchDistanceMap value) {
+        return value.isEmpty();
+    }
+
+    @Override
+    public void serialize(BranchDistanceMap agencias, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        char[] buffer = new char[DistanceFormat.TAMANHO_MAXIMO];
+        gen.writeStartObject(agencias, agencias.size());
+        for (int i = 0; i < agencias.size(); i++) {
+            gen.writeFieldName(agencias.name(i));
+            double distancia = agencias.distance(i);
+            int tamanho = DistanceFormat.write(distancia, buffer);
+            if (tamanho < 0) {
+                gen.writeString(DistanceFormat.format(distancia));
+            } else {
+                gen.writeString(buffer, 0, tamanho);
+            }
+        }
+        gen.writeEndObject();
+    }
+}
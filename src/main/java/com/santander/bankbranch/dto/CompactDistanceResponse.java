@@ -0,0 +1,22 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Version 2 of the full distance response: every branch ordered by distance (then id), as two
+ * parallel arrays of ids and unrounded distances. Names are {@code AGENCIA_<id>}.
+ */
+public record CompactDistanceResponse(
+
+    @JsonProperty("posX")
+    Double posX,
+
+    @JsonProperty("posY")
+    Double posY,
+
+    @JsonProperty("ids")
+    long[] ids,
+
+    @JsonProperty("distancias")
+    double[] distancias
+) {}
@@ -0,0 +1,13 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record DistanceBankBranchLine(
+
+    @JsonProperty("nome")
+    String nome,
+
+    @JsonProperty("distancia")
+    String distancia
+)
+{}
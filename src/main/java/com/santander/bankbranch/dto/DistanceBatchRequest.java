@@ -0,0 +1,24 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record DistanceBatchRequest(
+
+    @JsonProperty("pontos")
+    List<Ponto> pontos,
+
+    @JsonProperty("k")
+    Integer k
+) {
+
+    public record Ponto(
+
+        @JsonProperty("posX")
+        Double posX,
+
+        @JsonProperty("posY")
+        Double posY
+    ) {}
+}
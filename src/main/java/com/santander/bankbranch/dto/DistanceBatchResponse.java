@@ -0,0 +1,14 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record DistanceBatchResponse(
+
+    @JsonProperty("resultados")
+    List<DistanciaResponse> resultados,
+
+    @JsonProperty("totalPontos")
+    Integer totalPontos
+) {}
@@ -0,0 +1,82 @@
+package com.santander.bankbranch.dto;
+
+/**
+ * Writes distances as {@code "distancia = 12.35"}, the text historically produced by
+ * {@code String.format("distancia = %.2f", d).replace(",", ".")}, without going through
+ * {@link java.util.Formatter}.
+ *
+ * %.2f rounds HALF_UP on the decimal digits of the double (1.115 becomes 1.12 although it
+ * is stored as 1.11499999...). {@code d * 100} is only trusted when it is clearly away from
+ * a .5 tie; values near a tie, and values outside the fast range, go through the Formatter
+ * so the output stays identical.
+ */
+public final class DistanceFormat {
+
+    public static final String PREFIXO = "distancia = ";
+
+    /** Enough for the prefix and any value below {@link #LIMITE_RAPIDO}. */
+    public static final int TAMANHO_MAXIMO = 32;
+
+    private static final double LIMITE_RAPIDO = 1e12;
+    // Relative to d * 100; many orders of magnitude above the error of a double
+    private static final double MARGEM_EMPATE = 1e-9;
+
+    private DistanceFormat() {
+    }
+
+    public static String format(double distancia) {
+        char[] buffer = new char[TAMANHO_MAXIMO];
+        int tamanho = write(distancia, buffer);
+        return tamanho < 0 ? formatarComFormatter(distancia) : new String(buffer, 0, tamanho);
+    }
+
+    /**
+     * Writes the text into {@code buffer} (at least TAMANHO_MAXIMO chars) and returns its
+     * length, or -1 when the value is outside the fast path (negative, NaN, huge or close to
+     * a rounding tie) and must be formatted with {@link #format(double)}.
+     */
+    public static int write(double distancia, char[] buffer) {
+        // The sign bit also catches -0.0, which %.2f prints as -0.00
+        if (Double.doubleToRawLongBits(distancia) < 0 || !(distancia < LIMITE_RAPIDO)) {
+            return -1;
+        }
+
+        double escalado = distancia * 100;
+        double fracao = escalado - Math.floor(escalado);
+        if (Math.abs(fracao - 0.5) <= MARGEM_EMPATE * Math.max(1.0, escalado)) {
+            return -1;
+        }
+
+        long centesimos = (long) Math.floor(escalado + 0.5);
+        int posicao = PREFIXO.length();
+        PREFIXO.getChars(0, posicao, buffer, 0);
+
+        int decimais = (int) (centesimos % 100);
+        posicao = escreverInteiro(centesimos / 100, buffer, posicao);
+        buffer[posicao++] = '.';
+        buffer[posicao++] = (char) ('0' + decimais / 10);
+        buffer[posicao++] = (char) ('0' + decimais % 10);
+        return posicao;
+    }
+
+    private static int escreverInteiro(long valor, char[] buffer, int posicao) {
+        if (valor == 0) {
+            buffer[posicao] = '0';
+            return posicao + 1;
+        }
+        int digitos = 0;
+        for (long resto = valor; resto > 0; resto /= 10) {
+            digitos++;
+        }
+        int fim = posicao + digitos;
+        for (int i = fim - 1; i >= posicao; i--) {
+            buffer[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return fim;
+    }
+
+    private static String formatarComFormatter(double distancia) {
+        return String.format(PREFIXO + "%.2f", distancia).replace(",", ".");
+    }
+}
@@ -0,0 +1,17 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record RegisterBankBranchBatchResponse(
+
+    @JsonProperty("resultados")
+    List<RegisterBankBranchResponse> resultados,
+
+    @JsonProperty("totalCadastradas")
+    Integer totalCadastradas,
+
+    @JsonProperty("totalRejeitadas")
+    Integer totalRejeitadas
+) {}
@@ -0,0 +1,84 @@
+package com.santander.bankbranch.event;
+
+import com.santander.bankbranch.model.BankBranch;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change feed of the bankbranch table: a JPA entity listener on BankBranch that publishes a
+ * BankBranchRegisteredEvent for every inserted row and a BankBranchRemovedEvent for every
+ * deleted one, as plain application events, once the transaction that wrote them commits.
+ *
+ * Changes are kept in a TransactionSynchronization of their transaction, so a rollback drops
+ * them and a transaction suspended by another one keeps its own. Outside a transaction they
+ * are published straight away. Subscribers such as BankBranchSpatialIndex and
+ * DistanceQueryCache use @EventListener and apply each change on its own.
+ *
+ * Writes that bypass JPA, like the JDBC inserts of a snapshot restore, are not published.
+ *
+ * Hibernate creates the listener through Spring, which injects the publisher.
+ */
+public class BankBranchChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(BankBranchChangeListener.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BankBranchChangeListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    public void onPersist(BankBranch bankBranch) {
+        publicar(new BankBranchRegisteredEvent(bankBranch));
+    }
+
+    @PostRemove
+    public void onRemove(BankBranch bankBranch) {
+        publicar(new BankBranchRemovedEvent(bankBranch));
+    }
+
+    private void publicar(Object evento) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(evento);
+            return;
+        }
+        pendentesDaTransacao().eventos.add(evento);
+    }
+
+    private Pendentes pendentesDaTransacao() {
+        for (TransactionSynchronization sincronizacao : TransactionSynchronizationManager.getSynchronizations()) {
+            if (sincronizacao instanceof Pendentes pendentes) {
+                return pendentes;
+            }
+        }
+        Pendentes pendentes = new Pendentes();
+        TransactionSynchronizationManager.registerSynchronization(pendentes);
+        return pendentes;
+    }
+
+    private final class Pendentes implements TransactionSynchronization {
+
+        private final List<Object> eventos = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            for (Object evento : eventos) {
+                try {
+                    eventPublisher.publishEvent(evento);
+                } catch (RuntimeException e) {
+                    // The row is committed already; one failing subscriber must not hide the rest
+                    logger.error("Error publishing {} after commit: {}", evento, e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
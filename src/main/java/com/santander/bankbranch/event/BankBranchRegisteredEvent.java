@@ -0,0 +1,7 @@
+package com.santander.bankbranch.event;
+
+import com.santander.bankbranch.model.BankBranch;
+
+public record BankBranchRegisteredEvent(
+    BankBranch bankBranch
+) {}
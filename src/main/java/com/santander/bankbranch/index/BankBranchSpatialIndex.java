@@ -0,0 +1,701 @@
+package com.santander.bankbranch.index;
+
+import com.santander.bankbranch.event.BankBranchRegisteredEvent;
+import com.santander.bankbranch.event.BankBranchRemovedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory 2-d tree over branch coordinates.
+ *
+ * Branches live in a ColumnarBranchStore and the tree is two int columns of child positions
+ * (-1 for none), 40 bytes per branch, plus an open-addressing table from id to position of
+ * 8 to 16 more. The split axis alternates with depth, starting with X at the root.
+ *
+ * Distances are computed exactly like the native queries in BankBranchRepository
+ * (SQRT(POWER(dx, 2) + POWER(dy, 2))) and ties are broken by id, so results come
+ * out in the same order as the database path.
+ *
+ * With a raster resolution above zero, searches for the single nearest branch inside the valid
+ * domain are answered from a NearestBranchRaster instead of the tree: one array read and a
+ * distance check per candidate of the cell. Cells far from every branch are left to the tree.
+ *
+ * Removed branches stay in the columns and the tree, marked in a bit set and skipped by every
+ * search, until they are more than half of the columns; the index is then compacted and rebuilt.
+ */
+@Component
+public class BankBranchSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BankBranchSpatialIndex.class);
+
+    private static final int NENHUM = -1;
+    // Tolerance on the split-plane pruning test so rounding never drops a tied candidate
+    private static final double MARGEM_PODA = 1e-12;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ColumnarBranchStore agencias = new ColumnarBranchStore();
+    private int[] esquerda = new int[0];
+    private int[] direita = new int[0];
+    private int raiz = NENHUM;
+    // Positions plus one (0 for an empty slot), hashed by id; at most half full
+    private int[] porId = new int[0];
+    private final NearestBranchRaster raster;
+    private BitSet removidas = new BitSet();
+    private int quantidadeRemovidas;
+    private long remocoes;
+    private volatile boolean pronto;
+
+    public BankBranchSpatialIndex() {
+        this(0);
+    }
+
+    /** A {@code resolucaoRaster} of 0 leaves the nearest-branch raster out. */
+    @Autowired
+    public BankBranchSpatialIndex(@Value("${bankbranch.index.raster.resolucao:0.5}") double resolucaoRaster) {
+        this.raster = resolucaoRaster > 0 ? new NearestBranchRaster(resolucaoRaster) : null;
+    }
+
+    public void load(Collection<BranchPoint> pontos) {
+        ColumnarBranchStore carregadas = new ColumnarBranchStore(pontos.size());
+        pontos.forEach(ponto -> carregadas.add(ponto.id(), ponto.posX(), ponto.posY(), ponto.creationDate()));
+        load(carregadas);
+    }
+
+    /** Takes ownership of {@code carregadas}; the caller must not touch it afterwards. */
+    public void load(ColumnarBranchStore carregadas) {
+        lock.writeLock().lock();
+        try {
+            // Keep whatever was registered while the initial load was running
+            Set<Long> registradas = new HashSet<>();
+            for (int i = 0; i < agencias.size(); i++) {
+                registradas.add(agencias.id(i));
+            }
+            for (int i = 0; i < carregadas.size() && !registradas.isEmpty(); i++) {
+                registradas.remove(carregadas.id(i));
+            }
+            for (int i = 0; i < agencias.size(); i++) {
+                if (registradas.contains(agencias.id(i)) && !removidas.get(i)) {
+                    carregadas.add(agencias.id(i), agencias.posX(i), agencias.posY(i), agencias.creationEpochNanos(i));
+                }
+            }
+
+            agencias = carregadas;
+            removidas = new BitSet();
+            quantidadeRemovidas = 0;
+            reconstruir();
+            indexarIds();
+            reconstruirRaster();
+            pronto = true;
+            logger.info("Spatial index loaded with {} branches ({} KB)", agencias.size(), memoryBytes() / 1024);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds the branch unless the index already holds its id; returns whether it was added. */
+    public boolean add(BranchPoint agencia) {
+        lock.writeLock().lock();
+        try {
+            if (posicaoDe(agencia.id()) != NENHUM) {
+                return false;
+            }
+            int posicao = agencias.add(agencia.id(), agencia.posX(), agencia.posY(), agencia.creationDate());
+            if (esquerda.length < agencias.capacity()) {
+                esquerda = Arrays.copyOf(esquerda, agencias.capacity());
+                direita = Arrays.copyOf(direita, agencias.capacity());
+            }
+            esquerda[posicao] = NENHUM;
+            direita[posicao] = NENHUM;
+            if (porId.length < 2 * agencias.size()) {
+                indexarIds();
+            } else {
+                indexarId(posicao);
+            }
+
+            if (inserir(posicao) > profundidadeMaxima()) {
+                reconstruir();
+            }
+            if (raster != null) {
+                for (int celula : raster.add(posicao, agencias)) {
+                    preencherCelula(celula, false);
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Marks the branch as removed; the raster cells that listed it are filled again from the tree. */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int posicao = posicaoDe(id);
+            if (posicao == NENHUM) {
+                return false;
+            }
+            removidas.set(posicao);
+            quantidadeRemovidas++;
+            remocoes++;
+
+            if (quantidadeRemovidas > agencias.size() / 2) {
+                compactar();
+            } else if (raster != null) {
+                for (int celula : raster.cellsWith(posicao, agencias)) {
+                    preencherCelula(celula, false);
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Runs before any result cache is invalidated, so no search can see a new version without the branch
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onBankBranchRegistered(BankBranchRegisteredEvent event) {
+        add(BranchPoint.of(event.bankBranch()));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onBankBranchRemoved(BankBranchRemovedEvent event) {
+        remove(event.bankBranch().getId());
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return posicaoDe(id) != NENHUM;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Newest creation date among the branches in the index, or null when it is empty. */
+    public LocalDateTime newestCreationDate() {
+        lock.readLock().lock();
+        try {
+            long maisRecente = Long.MIN_VALUE;
+            for (int i = 0; i < agencias.size(); i++) {
+                if (!removidas.get(i)) {
+                    maisRecente = Math.max(maisRecente, agencias.creationEpochNanos(i));
+                }
+            }
+            return maisRecente == Long.MIN_VALUE ? null : ColumnarBranchStore.fromEpochNanos(maisRecente);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return pronto;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return agencias.size() - quantidadeRemovidas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Consistent copy of every branch in the index, e.g. to write a snapshot. */
+    public ColumnarBranchStore snapshot() {
+        lock.readLock().lock();
+        try {
+            return quantidadeRemovidas == 0 ? agencias.copy() : semRemovidas();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Branches removed since startup; with size() it tells whether the index changed. */
+    public long removals() {
+        lock.readLock().lock();
+        try {
+            return remocoes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Heap taken by the branch columns, the tree, the id table and the raster, allocated capacity included. */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return agencias.memoryBytes() + 2L * Integer.BYTES * esquerda.length + (long) Integer.BYTES * porId.length
+                    + (raster != null ? raster.memoryBytes() : 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public BranchDistances findOrdered(double posX, double posY) {
+        return findNearest(posX, posY, Integer.MAX_VALUE, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns up to {@code limite} branches within {@code raio} of the given position,
+     * ordered by distance and then id.
+     */
+    public BranchDistances findNearest(double posX, double posY, int limite, double raio) {
+        if (limite <= 0) {
+            return new BranchDistances(0);
+        }
+
+        lock.readLock().lock();
+        try {
+            return procurar(posX, posY, limite, raio);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * findNearest for every position, all against the same state of the index: the read lock is
+     * taken once and held while the positions are searched in parallel on the common
+     * ForkJoinPool. The workers never take the lock themselves, so a waiting writer cannot
+     * block them behind the read lock held here.
+     */
+    public BranchDistances[] findNearest(double[] posX, double[] posY, int limite, double raio) {
+        if (posX.length != posY.length) {
+            throw new IllegalArgumentException("posX and posY must have the same length");
+        }
+        BranchDistances[] resultados = new BranchDistances[posX.length];
+        if (limite <= 0) {
+            Arrays.setAll(resultados, i -> new BranchDistances(0));
+            return resultados;
+        }
+
+        lock.readLock().lock();
+        try {
+            IntStream.range(0, posX.length)
+                    .parallel()
+                    .forEach(i -> resultados[i] = procurar(posX[i], posY[i], limite, raio));
+            return resultados;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static double distance(double x1, double y1, double x2, double y2) {
+        return Math.sqrt(Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2));
+    }
+
+    // Caller holds the read lock
+    private BranchDistances procurar(double posX, double posY, int limite, double raio) {
+        int tamanho = agencias.size() - quantidadeRemovidas;
+        if (limite == 1 && tamanho > 0 && raster != null && NearestBranchRaster.covers(posX, posY)) {
+            int[] candidatas = raster.candidates(raster.cellOf(posX, posY));
+            if (candidatas != null) {
+                return maisProximaEntre(candidatas, posX, posY, raio);
+            }
+        }
+        if (limite >= tamanho && raio == Double.POSITIVE_INFINITY) {
+            return ordenarTodas(posX, posY);
+        }
+
+        Melhores melhores = new Melhores(Math.min(limite, Math.max(tamanho, 1)), limite);
+        buscar(raiz, true, posX, posY, raio, melhores);
+        return melhores.ordenadas();
+    }
+
+    private BranchDistances maisProximaEntre(int[] candidatas, double posX, double posY, double raio) {
+        int melhor = NENHUM;
+        double menorDistancia = Double.POSITIVE_INFINITY;
+        for (int no : candidatas) {
+            if (removidas.get(no)) {
+                continue;
+            }
+            double distancia = distance(agencias.posX(no), agencias.posY(no), posX, posY);
+            int comparacao = Double.compare(distancia, menorDistancia);
+            if (melhor == NENHUM || comparacao < 0 || (comparacao == 0 && agencias.id(no) < agencias.id(melhor))) {
+                melhor = no;
+                menorDistancia = distancia;
+            }
+        }
+
+        BranchDistances resultado = new BranchDistances(1);
+        if (melhor != NENHUM && menorDistancia <= raio) {
+            resultado.add(agencias.id(melhor), menorDistancia);
+        }
+        return resultado;
+    }
+
+    private void buscar(int no, boolean divideX, double posX, double posY, double raio, Melhores melhores) {
+        if (no == NENHUM) {
+            return;
+        }
+
+        double distancia = distance(agencias.posX(no), agencias.posY(no), posX, posY);
+        if (distancia <= raio && !removidas.get(no)) {
+            melhores.oferecer(no, distancia);
+        }
+
+        double delta = divideX ? posX - agencias.posX(no) : posY - agencias.posY(no);
+        int proximo = delta < 0 ? esquerda[no] : direita[no];
+        int distante = delta < 0 ? direita[no] : esquerda[no];
+
+        buscar(proximo, !divideX, posX, posY, raio, melhores);
+
+        double limiteBusca = melhores.completo() ? melhores.pior() : raio;
+        if (Math.abs(delta) <= limiteBusca * (1 + MARGEM_PODA)) {
+            buscar(distante, !divideX, posX, posY, raio, melhores);
+        }
+    }
+
+    private BranchDistances ordenarTodas(double posX, double posY) {
+        double[] distancias = new double[agencias.size()];
+        int[] ordem = new int[agencias.size() - quantidadeRemovidas];
+        int tamanho = 0;
+        for (int i = 0; i < agencias.size(); i++) {
+            distancias[i] = distance(agencias.posX(i), agencias.posY(i), posX, posY);
+            if (!removidas.get(i)) {
+                ordem[tamanho++] = i;
+            }
+        }
+        ordenar(ordem, distancias);
+
+        BranchDistances resultado = new BranchDistances(tamanho);
+        for (int no : ordem) {
+            resultado.add(agencias.id(no), distancias[no]);
+        }
+        return resultado;
+    }
+
+    // Merge sort of positions by (distance, id): no boxing and no Comparator per element
+    private void ordenar(int[] ordem, double[] distancias) {
+        int[] auxiliar = new int[ordem.length];
+        for (int largura = 1; largura < ordem.length; largura <<= 1) {
+            for (int inicio = 0; inicio < ordem.length - largura; inicio += largura << 1) {
+                int meio = inicio + largura;
+                int fim = Math.min(meio + largura, ordem.length);
+                if (!antes(ordem[meio], ordem[meio - 1], distancias)) {
+                    continue;
+                }
+                System.arraycopy(ordem, inicio, auxiliar, inicio, fim - inicio);
+                int i = inicio;
+                int j = meio;
+                for (int k = inicio; k < fim; k++) {
+                    if (j >= fim || (i < meio && !antes(auxiliar[j], auxiliar[i], distancias))) {
+                        ordem[k] = auxiliar[i++];
+                    } else {
+                        ordem[k] = auxiliar[j++];
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean antes(int a, int b, double[] distancias) {
+        int comparacao = Double.compare(distancias[a], distancias[b]);
+        return comparacao < 0 || (comparacao == 0 && agencias.id(a) < agencias.id(b));
+    }
+
+    private int inserir(int posicao) {
+        if (raiz == NENHUM) {
+            raiz = posicao;
+            return 1;
+        }
+
+        int atual = raiz;
+        boolean divideX = true;
+        int profundidade = 1;
+        while (true) {
+            profundidade++;
+            boolean paraEsquerda = divideX
+                    ? agencias.posX(posicao) < agencias.posX(atual)
+                    : agencias.posY(posicao) < agencias.posY(atual);
+            int filho = paraEsquerda ? esquerda[atual] : direita[atual];
+            if (filho == NENHUM) {
+                if (paraEsquerda) {
+                    esquerda[atual] = posicao;
+                } else {
+                    direita[atual] = posicao;
+                }
+                return profundidade;
+            }
+            atual = filho;
+            divideX = !divideX;
+        }
+    }
+
+    private void reconstruir() {
+        int tamanho = agencias.size();
+        esquerda = new int[agencias.capacity()];
+        direita = new int[agencias.capacity()];
+        int[] ordem = new int[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            ordem[i] = i;
+        }
+        raiz = construir(ordem, 0, tamanho, true);
+    }
+
+    // The bound of a cell is at most the nearest distance from its centre plus half a diagonal, and a
+    // candidate lies within the bound of some point of the cell, so within another half diagonal
+    private void reconstruirRaster() {
+        if (raster == null) {
+            return;
+        }
+        raster.limpar();
+        int[] alcancadas = raster.cellsNear(agencias, removidas);
+        IntStream.range(0, alcancadas.length).parallel().forEach(i -> preencherCelula(alcancadas[i], true));
+        raster.finish();
+    }
+
+    // Needs at least one branch that is not removed
+    private void preencherCelula(int celula, boolean construcao) {
+        double meiaDiagonal = raster.resolution() * Math.sqrt(2) / 2;
+        double centroX = raster.centerX(celula);
+        double centroY = raster.centerY(celula);
+        Melhores maisProxima = new Melhores(1, 1);
+        buscar(raiz, true, centroX, centroY, Double.POSITIVE_INFINITY, maisProxima);
+        double raio = maisProxima.pior() + 2 * meiaDiagonal;
+
+        // Stopping one past the cap keeps cells amid hundreds of close branches cheap
+        int limite = NearestBranchRaster.MAXIMO_CANDIDATAS + 1;
+        Melhores proximas = new Melhores(16, limite);
+        buscar(raiz, true, centroX, centroY, raio * (1 + MARGEM_PODA), proximas);
+        boolean completas = proximas.tamanho < limite;
+        if (construcao) {
+            raster.fill(celula, proximas.nos, proximas.tamanho, completas, agencias);
+        } else {
+            raster.refill(celula, proximas.nos, proximas.tamanho, completas, agencias);
+        }
+    }
+
+    // Position of the branch with this id that is not removed
+    private int posicaoDe(long id) {
+        if (porId.length == 0) {
+            return NENHUM;
+        }
+        int mascara = porId.length - 1;
+        for (int slot = espalhar(id) & mascara; porId[slot] != 0; slot = (slot + 1) & mascara) {
+            int posicao = porId[slot] - 1;
+            if (agencias.id(posicao) == id && !removidas.get(posicao)) {
+                return posicao;
+            }
+        }
+        return NENHUM;
+    }
+
+    // Removed branches keep their slots until the next compaction, which builds the table again
+    private void indexarIds() {
+        int minimo = Math.max(2 * agencias.size(), 16);
+        porId = new int[Integer.highestOneBit(minimo - 1) << 1];
+        for (int i = 0; i < agencias.size(); i++) {
+            indexarId(i);
+        }
+    }
+
+    private void indexarId(int posicao) {
+        int mascara = porId.length - 1;
+        int slot = espalhar(agencias.id(posicao)) & mascara;
+        while (porId[slot] != 0) {
+            slot = (slot + 1) & mascara;
+        }
+        porId[slot] = posicao + 1;
+    }
+
+    // Sequence ids are consecutive: the Fibonacci multiplier spreads them over the high bits
+    private static int espalhar(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private ColumnarBranchStore semRemovidas() {
+        ColumnarBranchStore restantes = new ColumnarBranchStore(agencias.size() - quantidadeRemovidas);
+        for (int i = 0; i < agencias.size(); i++) {
+            if (!removidas.get(i)) {
+                restantes.add(agencias.id(i), agencias.posX(i), agencias.posY(i), agencias.creationEpochNanos(i));
+            }
+        }
+        return restantes;
+    }
+
+    private void compactar() {
+        agencias = semRemovidas();
+        removidas = new BitSet();
+        quantidadeRemovidas = 0;
+        reconstruir();
+        indexarIds();
+        reconstruirRaster();
+    }
+
+    private int construir(int[] ordem, int inicio, int fim, boolean divideX) {
+        if (inicio >= fim) {
+            return NENHUM;
+        }
+
+        int meio = (inicio + fim) >>> 1;
+        selecionar(ordem, inicio, fim - 1, meio, divideX);
+
+        // Everything left of the split must be strictly smaller than it
+        double corte = coordenada(ordem[meio], divideX);
+        int divisao = inicio;
+        for (int i = inicio; i < meio; i++) {
+            if (coordenada(ordem[i], divideX) < corte) {
+                trocar(ordem, i, divisao++);
+            }
+        }
+        trocar(ordem, divisao, meio);
+
+        int no = ordem[divisao];
+        esquerda[no] = construir(ordem, inicio, divisao, !divideX);
+        direita[no] = construir(ordem, divisao + 1, fim, !divideX);
+        return no;
+    }
+
+    // Quickselect: leaves the k-th smallest coordinate at k, smaller or equal ones before it
+    private void selecionar(int[] ordem, int esquerdo, int direito, int k, boolean divideX) {
+        while (direito > esquerdo) {
+            double pivo = coordenada(ordem[(esquerdo + direito) >>> 1], divideX);
+            int i = esquerdo;
+            int j = direito;
+            while (i <= j) {
+                while (coordenada(ordem[i], divideX) < pivo) {
+                    i++;
+                }
+                while (coordenada(ordem[j], divideX) > pivo) {
+                    j--;
+                }
+                if (i <= j) {
+                    trocar(ordem, i++, j--);
+                }
+            }
+            if (k <= j) {
+                direito = j;
+            } else if (k >= i) {
+                esquerdo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double coordenada(int no, boolean divideX) {
+        return divideX ? agencias.posX(no) : agencias.posY(no);
+    }
+
+    private static void trocar(int[] ordem, int i, int j) {
+        int temporario = ordem[i];
+        ordem[i] = ordem[j];
+        ordem[j] = temporario;
+    }
+
+    private int profundidadeMaxima() {
+        return 4 * (32 - Integer.numberOfLeadingZeros(agencias.size())) + 8;
+    }
+
+    /** Max-heap of the best candidates so far, worst one (largest distance, then id) on top. */
+    private final class Melhores {
+        private final int limite;
+        private int[] nos;
+        private double[] distancias;
+        private int tamanho;
+
+        private Melhores(int capacidade, int limite) {
+            this.limite = limite;
+            this.nos = new int[capacidade];
+            this.distancias = new double[capacidade];
+        }
+
+        private boolean completo() {
+            return tamanho >= limite;
+        }
+
+        private double pior() {
+            return distancias[0];
+        }
+
+        private void oferecer(int no, double distancia) {
+            if (tamanho < limite) {
+                if (tamanho == nos.length) {
+                    nos = Arrays.copyOf(nos, tamanho << 1);
+                    distancias = Arrays.copyOf(distancias, tamanho << 1);
+                }
+                nos[tamanho] = no;
+                distancias[tamanho] = distancia;
+                subir(tamanho++);
+            } else if (menor(no, distancia, nos[0], distancias[0])) {
+                nos[0] = no;
+                distancias[0] = distancia;
+                descer(0, tamanho);
+            }
+        }
+
+        private BranchDistances ordenadas() {
+            // Heap sort in place: the heap ends up ascending
+            for (int fim = tamanho - 1; fim > 0; fim--) {
+                trocarEntradas(0, fim);
+                descer(0, fim);
+            }
+            BranchDistances resultado = new BranchDistances(tamanho);
+            for (int i = 0; i < tamanho; i++) {
+                resultado.add(agencias.id(nos[i]), distancias[i]);
+            }
+            return resultado;
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int pai = (i - 1) >>> 1;
+                if (!menor(nos[pai], distancias[pai], nos[i], distancias[i])) {
+                    return;
+                }
+                trocarEntradas(pai, i);
+                i = pai;
+            }
+        }
+
+        private void descer(int i, int fim) {
+            while (true) {
+                int maior = i;
+                int filho = 2 * i + 1;
+                if (filho < fim && menor(nos[maior], distancias[maior], nos[filho], distancias[filho])) {
+                    maior = filho;
+                }
+                filho++;
+                if (filho < fim && menor(nos[maior], distancias[maior], nos[filho], distancias[filho])) {
+                    maior = filho;
+                }
+                if (maior == i) {
+                    return;
+                }
+                trocarEntradas(i, maior);
+                i = maior;
+            }
+        }
+
+        private boolean menor(int a, double distanciaA, int b, double distanciaB) {
+            int comparacao = Double.compare(distanciaA, distanciaB);
+            return comparacao < 0 || (comparacao == 0 && agencias.id(a) < agencias.id(b));
+        }
+
+        private void trocarEntradas(int i, int j) {
+            int no = nos[i];
+            nos[i] = nos[j];
+            nos[j] = no;
+            double distancia = distancias[i];
+            distancias[i] = distancias[j];
+            distancias[j] = distancia;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.santander.bankbranch.index;
+
+import com.santander.bankbranch.model.BankBranch;
+
+import java.util.Arrays;
+
+/**
+ * Result of a spatial index search, ordered by distance and then id, as two primitive columns.
+ * Names are only built when asked for.
+ */
+public final class BranchDistances {
+
+    private long[] ids;
+    private double[] distancias;
+    private int tamanho;
+
+    public BranchDistances(int capacidade) {
+        int inicial = Math.max(capacidade, 4);
+        ids = new long[inicial];
+        distancias = new double[inicial];
+    }
+
+    public void add(long id, double distancia) {
+        if (tamanho == ids.length) {
+            int capacidade = ids.length << 1;
+            ids = Arrays.copyOf(ids, capacidade);
+            distancias = Arrays.copyOf(distancias, capacidade);
+        }
+        ids[tamanho] = id;
+        distancias[tamanho] = distancia;
+        tamanho++;
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    public long id(int indice) {
+        return ids[indice];
+    }
+
+    public String name(int indice) {
+        return BankBranch.nomeDaAgencia(ids[indice]);
+    }
+
+    public double distance(int indice) {
+        return distancias[indice];
+    }
+
+    /** Copy of the id column trimmed to the size. */
+    public long[] ids() {
+        return Arrays.copyOf(ids, tamanho);
+    }
+
+    /** Copy of the distance column trimmed to the size. */
+    public double[] distances() {
+        return Arrays.copyOf(distancias, tamanho);
+    }
+}
@@ -0,0 +1,26 @@
+package com.santander.bankbranch.index;
+
+import com.santander.bankbranch.model.BankBranch;
+
+import java.time.LocalDateTime;
+
+public record BranchPoint(
+    long id,
+    double posX,
+    double posY,
+    LocalDateTime creationDate
+) {
+
+    public static BranchPoint of(BankBranch bankBranch) {
+        return new BranchPoint(
+                bankBranch.getId(),
+                bankBranch.getPosX(),
+                bankBranch.getPosY(),
+                bankBranch.getCreationDate()
+        );
+    }
+
+    public String name() {
+        return BankBranch.nomeDaAgencia(id);
+    }
+}
@@ -0,0 +1,143 @@
+package com.santander.bankbranch.index;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of a ColumnarBranchStore, read and written through memory mapping.
+ *
+ * Layout, little-endian: a 64-byte header (magic, format version, branch count, newest
+ * creation epoch in nanoseconds, write time in epoch milliseconds, CRC32C of the body) followed
+ * by the four columns one after the other: ids, xs, ys and creation epochs, 8 bytes per value.
+ * The file is written next to its final path and moved into place, so a crash mid-write never
+ * leaves a truncated snapshot behind.
+ */
+public final class BranchSnapshotFile {
+
+    public static final int VERSAO = 1;
+
+    private static final int MAGICO = 0x4242534E; // "BBSN"
+    private static final int TAMANHO_CABECALHO = 64;
+    private static final int COLUNAS = 4;
+
+    private BranchSnapshotFile() {
+    }
+
+    public record Snapshot(ColumnarBranchStore branches, long newestCreationEpochNanos, long writtenAtEpochMillis) {
+    }
+
+    public static void write(Path arquivo, ColumnarBranchStore agencias) throws IOException {
+        int tamanho = agencias.size();
+        long bytesColuna = (long) Long.BYTES * tamanho;
+        long maisRecente = Long.MIN_VALUE;
+        for (int i = 0; i < tamanho; i++) {
+            maisRecente = Math.max(maisRecente, agencias.creationEpochNanos(i));
+        }
+
+        Path diretorio = arquivo.toAbsolutePath().getParent();
+        Files.createDirectories(diretorio);
+        Path temporario = Files.createTempFile(diretorio, arquivo.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                CRC32C crc = new CRC32C();
+                long posicao = TAMANHO_CABECALHO;
+                for (int coluna = 0; coluna < COLUNAS; coluna++) {
+                    MappedByteBuffer buffer = mapear(canal, FileChannel.MapMode.READ_WRITE, posicao, bytesColuna);
+                    switch (coluna) {
+                        case 0 -> buffer.asLongBuffer().put(agencias.ids(), 0, tamanho);
+                        case 1 -> buffer.asDoubleBuffer().put(agencias.xs(), 0, tamanho);
+                        case 2 -> buffer.asDoubleBuffer().put(agencias.ys(), 0, tamanho);
+                        default -> buffer.asLongBuffer().put(agencias.criacoes(), 0, tamanho);
+                    }
+                    crc.update(buffer.duplicate());
+                    buffer.force();
+                    posicao += bytesColuna;
+                }
+
+                MappedByteBuffer cabecalho = mapear(canal, FileChannel.MapMode.READ_WRITE, 0, TAMANHO_CABECALHO);
+                cabecalho.putInt(MAGICO)
+                        .putInt(VERSAO)
+                        .putLong(tamanho)
+                        .putLong(maisRecente)
+                        .putLong(System.currentTimeMillis())
+                        .putLong(crc.getValue());
+                cabecalho.force();
+            }
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Maps and validates the snapshot. Throws IOException when the file cannot be read and
+     * IllegalStateException when it is not a valid snapshot of this version.
+     */
+    public static Snapshot read(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanhoArquivo = canal.size();
+            if (tamanhoArquivo < TAMANHO_CABECALHO) {
+                throw new IllegalStateException("Snapshot is shorter than its header");
+            }
+
+            MappedByteBuffer cabecalho = mapear(canal, FileChannel.MapMode.READ_ONLY, 0, TAMANHO_CABECALHO);
+            if (cabecalho.getInt() != MAGICO) {
+                throw new IllegalStateException("Not a branch snapshot");
+            }
+            int versao = cabecalho.getInt();
+            if (versao != VERSAO) {
+                throw new IllegalStateException("Unsupported snapshot version " + versao);
+            }
+            long tamanho = cabecalho.getLong();
+            long maisRecente = cabecalho.getLong();
+            long escritoEm = cabecalho.getLong();
+            long crcEsperado = cabecalho.getLong();
+
+            long bytesColuna = (long) Long.BYTES * tamanho;
+            if (tamanho < 0 || bytesColuna > Integer.MAX_VALUE
+                    || tamanhoArquivo != TAMANHO_CABECALHO + COLUNAS * bytesColuna) {
+                throw new IllegalStateException("Snapshot size does not match its header");
+            }
+
+            int total = (int) tamanho;
+            int capacidade = Math.max(total, 16);
+            long[] ids = new long[capacidade];
+            double[] xs = new double[capacidade];
+            double[] ys = new double[capacidade];
+            long[] criacoes = new long[capacidade];
+
+            CRC32C crc = new CRC32C();
+            long posicao = TAMANHO_CABECALHO;
+            for (int coluna = 0; coluna < COLUNAS; coluna++) {
+                MappedByteBuffer buffer = mapear(canal, FileChannel.MapMode.READ_ONLY, posicao, bytesColuna);
+                crc.update(buffer.duplicate());
+                switch (coluna) {
+                    case 0 -> buffer.asLongBuffer().get(ids, 0, total);
+                    case 1 -> buffer.asDoubleBuffer().get(xs, 0, total);
+                    case 2 -> buffer.asDoubleBuffer().get(ys, 0, total);
+                    default -> buffer.asLongBuffer().get(criacoes, 0, total);
+                }
+                posicao += bytesColuna;
+            }
+            if (crc.getValue() != crcEsperado) {
+                throw new IllegalStateException("Snapshot checksum mismatch");
+            }
+
+            return new Snapshot(new ColumnarBranchStore(ids, xs, ys, criacoes, total), maisRecente, escritoEm);
+        }
+    }
+
+    private static MappedByteBuffer mapear(FileChannel canal, FileChannel.MapMode modo, long posicao, long tamanho)
+            throws IOException {
+        MappedByteBuffer buffer = canal.map(modo, posicao, tamanho);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,150 @@
+package com.santander.bankbranch.index;
+
+import com.santander.bankbranch.model.BankBranch;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Branches kept column by column in four primitive arrays: 32 bytes per branch, against well
+ * over 100 for a BankBranch or BranchPoint (object headers, boxed Doubles, LocalDateTime and a
+ * String name). Names are not stored; like everywhere else they are derived from the id.
+ *
+ * Not thread-safe: BankBranchSpatialIndex guards it with its own lock.
+ */
+public final class ColumnarBranchStore {
+
+    private static final int CAPACIDADE_INICIAL = 1024;
+    // long[], double[], double[] and long[]
+    static final int BYTES_POR_AGENCIA = 4 * Long.BYTES;
+    private static final int CABECALHO_ARRAY = 16;
+
+    private long[] ids;
+    private double[] xs;
+    private double[] ys;
+    private long[] criacoes;
+    private int tamanho;
+
+    public ColumnarBranchStore() {
+        this(CAPACIDADE_INICIAL);
+    }
+
+    public ColumnarBranchStore(int capacidade) {
+        int inicial = Math.max(capacidade, 16);
+        ids = new long[inicial];
+        xs = new double[inicial];
+        ys = new double[inicial];
+        criacoes = new long[inicial];
+    }
+
+    // Takes ownership of the arrays; used when reading a snapshot
+    ColumnarBranchStore(long[] ids, double[] xs, double[] ys, long[] criacoes, int tamanho) {
+        this.ids = ids;
+        this.xs = xs;
+        this.ys = ys;
+        this.criacoes = criacoes;
+        this.tamanho = tamanho;
+    }
+
+    /** Appends a branch and returns its position in the columns. */
+    public int add(long id, double posX, double posY, long creationEpochNanos) {
+        if (tamanho == ids.length) {
+            crescer();
+        }
+        ids[tamanho] = id;
+        xs[tamanho] = posX;
+        ys[tamanho] = posY;
+        criacoes[tamanho] = creationEpochNanos;
+        return tamanho++;
+    }
+
+    public int add(long id, double posX, double posY, LocalDateTime creationDate) {
+        return add(id, posX, posY, toEpochNanos(creationDate));
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public int capacity() {
+        return ids.length;
+    }
+
+    public long id(int posicao) {
+        return ids[posicao];
+    }
+
+    public String name(int posicao) {
+        return BankBranch.nomeDaAgencia(ids[posicao]);
+    }
+
+    public double posX(int posicao) {
+        return xs[posicao];
+    }
+
+    public double posY(int posicao) {
+        return ys[posicao];
+    }
+
+    public long creationEpochNanos(int posicao) {
+        return criacoes[posicao];
+    }
+
+    public LocalDateTime creationDate(int posicao) {
+        return fromEpochNanos(criacoes[posicao]);
+    }
+
+    public BranchPoint point(int posicao) {
+        return new BranchPoint(ids[posicao], xs[posicao], ys[posicao], creationDate(posicao));
+    }
+
+    /** Copy trimmed to the current size. */
+    public ColumnarBranchStore copy() {
+        int capacidade = Math.max(tamanho, 16);
+        return new ColumnarBranchStore(Arrays.copyOf(ids, capacidade), Arrays.copyOf(xs, capacidade),
+                Arrays.copyOf(ys, capacidade), Arrays.copyOf(criacoes, capacidade), tamanho);
+    }
+
+    /** Heap taken by the columns, allocated capacity included. */
+    public long memoryBytes() {
+        return (long) BYTES_POR_AGENCIA * ids.length + 4L * CABECALHO_ARRAY;
+    }
+
+    /**
+     * creation_date has no zone, so the wall-clock value is kept as if it were UTC. Nanoseconds
+     * since 1970 fit in a long until 2262.
+     */
+    public static long toEpochNanos(LocalDateTime creationDate) {
+        return creationDate.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + creationDate.getNano();
+    }
+
+    public static LocalDateTime fromEpochNanos(long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    long[] ids() {
+        return ids;
+    }
+
+    double[] xs() {
+        return xs;
+    }
+
+    double[] ys() {
+        return ys;
+    }
+
+    long[] criacoes() {
+        return criacoes;
+    }
+
+    private void crescer() {
+        int capacidade = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacidade);
+        xs = Arrays.copyOf(xs, capacidade);
+        ys = Arrays.copyOf(ys, capacidade);
+        criacoes = Arrays.copyOf(criacoes, capacidade);
+    }
+}
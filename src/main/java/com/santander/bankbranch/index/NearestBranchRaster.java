@@ -0,0 +1,281 @@
+package com.santander.bankbranch.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Discretised Voronoi diagram of the branches over the valid domain (-180..180, -90..90): a
+ * grid of square cells of side {@code resolucao}, each holding the positions (in the
+ * ColumnarBranchStore) of every branch that can be the nearest one to some point of the cell.
+ *
+ * Each cell keeps an upper bound of the nearest distance anywhere inside it, the smallest
+ * farthest-corner distance of its candidates. A branch whose distance to the cell is larger
+ * than that bound can never be the nearest one there and is left out, so the nearest branch
+ * of a point, ties included, is always among the candidates of its cell.
+ *
+ * Only cells lying entirely within ALCANCE cells of some branch are kept. The others, and the
+ * few that would need more than MAXIMO_CANDIDATAS candidates, are null and answered by the
+ * tree. Every candidate of a kept cell is then within ALCANCE cells of it, so adding or
+ * removing a branch only touches the cells around it, however sparse or clustered the
+ * branches are.
+ *
+ * Not thread-safe: BankBranchSpatialIndex guards it with its own lock.
+ */
+final class NearestBranchRaster {
+
+    static final double MIN_X = -180.0;
+    static final double MAX_X = 180.0;
+    static final double MIN_Y = -90.0;
+    static final double MAX_Y = 90.0;
+    static final int MAXIMO_CANDIDATAS = 64;
+    static final int ALCANCE = 8;
+
+    // Tolerance on the bound so rounding never drops a tied candidate
+    private static final double MARGEM = 1e-9;
+
+    private final double resolucao;
+    private final double alcance;
+    private final int colunas;
+    private final int linhas;
+    // null for a cell left to the tree
+    private final int[][] candidatas;
+    private final double[] limites;
+    private long celulasMantidas;
+    private long totalCandidatas;
+
+    NearestBranchRaster(double resolucao) {
+        if (!(resolucao > 0) || resolucao > MAX_X - MIN_X) {
+            throw new IllegalArgumentException("The raster resolution must be between 0 and 360");
+        }
+        this.resolucao = resolucao;
+        this.alcance = ALCANCE * resolucao;
+        this.colunas = (int) Math.ceil((MAX_X - MIN_X) / resolucao);
+        this.linhas = (int) Math.ceil((MAX_Y - MIN_Y) / resolucao);
+        this.candidatas = new int[colunas * linhas][];
+        this.limites = new double[colunas * linhas];
+        limpar();
+    }
+
+    static boolean covers(double posX, double posY) {
+        return posX >= MIN_X && posX <= MAX_X && posY >= MIN_Y && posY <= MAX_Y;
+    }
+
+    int cells() {
+        return candidatas.length;
+    }
+
+    double resolution() {
+        return resolucao;
+    }
+
+    int cellOf(double posX, double posY) {
+        int coluna = Math.clamp((long) Math.floor((posX - MIN_X) / resolucao), 0, colunas - 1);
+        int linha = Math.clamp((long) Math.floor((posY - MIN_Y) / resolucao), 0, linhas - 1);
+        return linha * colunas + coluna;
+    }
+
+    double centerX(int celula) {
+        return MIN_X + (celula % colunas + 0.5) * resolucao;
+    }
+
+    double centerY(int celula) {
+        return MIN_Y + (celula / colunas + 0.5) * resolucao;
+    }
+
+    /**
+     * Positions of the branches that can be the nearest one to a point of the cell, or null
+     * when the cell is left to the tree. May still list a removed branch; callers skip it.
+     */
+    int[] candidates(int celula) {
+        return candidatas[celula];
+    }
+
+    void limpar() {
+        Arrays.fill(candidatas, null);
+        Arrays.fill(limites, Double.POSITIVE_INFINITY);
+        celulasMantidas = 0;
+        totalCandidatas = 0;
+    }
+
+    /** Cells within ALCANCE cells of some branch not removed: the only ones a full build has to fill. */
+    int[] cellsNear(ColumnarBranchStore agencias, BitSet removidas) {
+        BitSet comAgencia = new BitSet(candidatas.length);
+        for (int i = 0; i < agencias.size(); i++) {
+            if (!removidas.get(i)) {
+                comAgencia.set(cellOf(agencias.posX(i), agencias.posY(i)));
+            }
+        }
+        BitSet proximas = new BitSet(candidatas.length);
+        for (int celula = comAgencia.nextSetBit(0); celula >= 0; celula = comAgencia.nextSetBit(celula + 1)) {
+            int coluna = celula % colunas;
+            int linha = celula / colunas;
+            int primeiraColuna = Math.max(coluna - ALCANCE, 0);
+            int ultimaColuna = Math.min(coluna + ALCANCE, colunas - 1);
+            for (int l = Math.max(linha - ALCANCE, 0); l <= Math.min(linha + ALCANCE, linhas - 1); l++) {
+                proximas.set(l * colunas + primeiraColuna, l * colunas + ultimaColuna + 1);
+            }
+        }
+        return proximas.stream().toArray();
+    }
+
+    /**
+     * Sets the cell from any superset of its candidates that includes the branch nearest to its
+     * centre, or, when {@code completas} is false, from some of the branches around it only,
+     * leaving the cell to the tree. Cells may be filled in parallel; finish() must run once all
+     * of them are.
+     */
+    void fill(int celula, int[] posicoes, int quantidade, boolean completas, ColumnarBranchStore agencias) {
+        double limite = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < quantidade; i++) {
+            limite = Math.min(limite, distanciaMaxima(celula, agencias.posX(posicoes[i]), agencias.posY(posicoes[i])));
+        }
+        int[] mantidas = completas && limite <= alcance ? filtrar(celula, posicoes, quantidade, limite, agencias) : null;
+        if (mantidas == null || mantidas.length > MAXIMO_CANDIDATAS) {
+            candidatas[celula] = null;
+            limites[celula] = Double.POSITIVE_INFINITY;
+        } else {
+            candidatas[celula] = mantidas;
+            limites[celula] = limite;
+        }
+    }
+
+    /** fill() for one cell outside of a full build. */
+    void refill(int celula, int[] posicoes, int quantidade, boolean completas, ColumnarBranchStore agencias) {
+        int[] anteriores = candidatas[celula];
+        fill(celula, posicoes, quantidade, completas, agencias);
+        contabilizar(anteriores, candidatas[celula]);
+    }
+
+    void finish() {
+        celulasMantidas = 0;
+        totalCandidatas = 0;
+        for (int[] lista : candidatas) {
+            contabilizar(null, lista);
+        }
+    }
+
+    /**
+     * Adds the branch at {@code posicao} to the kept cells it can be the nearest one in, and
+     * drops the candidates it now beats everywhere in them. Returns the cells left to the tree
+     * that the branch may let the raster keep; they have to be filled again with refill().
+     */
+    int[] add(int posicao, ColumnarBranchStore agencias) {
+        double posX = agencias.posX(posicao);
+        double posY = agencias.posY(posicao);
+        int[] alcancadas = cellsAround(posX, posY);
+        int quantidade = 0;
+        for (int celula : alcancadas) {
+            int[] anteriores = candidatas[celula];
+            double distanciaMaxima = distanciaMaxima(celula, posX, posY);
+            if (anteriores == null) {
+                if (distanciaMaxima <= alcance) {
+                    alcancadas[quantidade++] = celula;
+                }
+                continue;
+            }
+            if (distanciaMinima(celula, posX, posY) > limites[celula] * (1 + MARGEM) + MARGEM) {
+                continue;
+            }
+
+            int[] atuais = anteriores;
+            if (distanciaMaxima < limites[celula]) {
+                limites[celula] = distanciaMaxima;
+                atuais = filtrar(celula, atuais, atuais.length, distanciaMaxima, agencias);
+            }
+            if (atuais.length < MAXIMO_CANDIDATAS) {
+                atuais = Arrays.copyOf(atuais, atuais.length + 1);
+                atuais[atuais.length - 1] = posicao;
+            } else {
+                atuais = null;
+                limites[celula] = Double.POSITIVE_INFINITY;
+            }
+            candidatas[celula] = atuais;
+            contabilizar(anteriores, atuais);
+        }
+        return Arrays.copyOf(alcancadas, quantidade);
+    }
+
+    /**
+     * Cells listing the branch at {@code posicao}; once it is removed they have to be filled
+     * again with refill(). Cells left to the tree stay correct without it.
+     */
+    int[] cellsWith(int posicao, ColumnarBranchStore agencias) {
+        int[] alcancadas = cellsAround(agencias.posX(posicao), agencias.posY(posicao));
+        int quantidade = 0;
+        for (int celula : alcancadas) {
+            if (candidatas[celula] != null && contem(candidatas[celula], posicao)) {
+                alcancadas[quantidade++] = celula;
+            }
+        }
+        return Arrays.copyOf(alcancadas, quantidade);
+    }
+
+    /** Heap taken by the grid: bounds, the array of cells and the candidate arrays of the kept ones. */
+    long memoryBytes() {
+        return (8 + 4) * (long) candidatas.length + 16 * celulasMantidas + 4 * totalCandidatas;
+    }
+
+    // Cells whose closest point is within the reach of the position: the only ones it can be a candidate in
+    private int[] cellsAround(double posX, double posY) {
+        double margem = alcance * (1 + MARGEM) + MARGEM;
+        int primeira = cellOf(posX - margem, posY - margem);
+        int ultima = cellOf(posX + margem, posY + margem);
+        int primeiraColuna = primeira % colunas;
+        int ultimaColuna = ultima % colunas;
+        int[] celulas = new int[(ultima / colunas - primeira / colunas + 1) * (ultimaColuna - primeiraColuna + 1)];
+        int quantidade = 0;
+        for (int linha = primeira / colunas; linha <= ultima / colunas; linha++) {
+            for (int coluna = primeiraColuna; coluna <= ultimaColuna; coluna++) {
+                int celula = linha * colunas + coluna;
+                if (distanciaMinima(celula, posX, posY) <= margem) {
+                    celulas[quantidade++] = celula;
+                }
+            }
+        }
+        return Arrays.copyOf(celulas, quantidade);
+    }
+
+    private void contabilizar(int[] anteriores, int[] atuais) {
+        celulasMantidas += (atuais != null ? 1 : 0) - (anteriores != null ? 1 : 0);
+        totalCandidatas += (atuais != null ? atuais.length : 0) - (anteriores != null ? anteriores.length : 0);
+    }
+
+    private static boolean contem(int[] lista, int posicao) {
+        for (int item : lista) {
+            if (item == posicao) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] filtrar(int celula, int[] posicoes, int quantidade, double limite, ColumnarBranchStore agencias) {
+        int[] mantidas = new int[quantidade];
+        int tamanho = 0;
+        for (int i = 0; i < quantidade; i++) {
+            int posicao = posicoes[i];
+            if (distanciaMinima(celula, agencias.posX(posicao), agencias.posY(posicao)) <= limite * (1 + MARGEM) + MARGEM) {
+                mantidas[tamanho++] = posicao;
+            }
+        }
+        return Arrays.copyOf(mantidas, tamanho);
+    }
+
+    // Distance from the point to the closest point of the cell (0 inside it)
+    private double distanciaMinima(int celula, double posX, double posY) {
+        double minX = MIN_X + (celula % colunas) * resolucao;
+        double minY = MIN_Y + (celula / colunas) * resolucao;
+        double dx = Math.max(Math.max(minX - posX, posX - (minX + resolucao)), 0);
+        double dy = Math.max(Math.max(minY - posY, posY - (minY + resolucao)), 0);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Distance from the point to the farthest corner of the cell
+    private double distanciaMaxima(int celula, double posX, double posY) {
+        double minX = MIN_X + (celula % colunas) * resolucao;
+        double minY = MIN_Y + (celula / colunas) * resolucao;
+        double dx = Math.max(Math.abs(posX - minX), Math.abs(posX - (minX + resolucao)));
+        double dy = Math.max(Math.abs(posY - minY), Math.abs(posY - (minY + resolucao)));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -1,17 +1,23 @@
 package com.santander.bankbranch.model;
 
+import com.santander.bankbranch.event.BankBranchChangeListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(BankBranchChangeListener.class)
 @Table(name = "bankbranch", indexes = {
     @Index(name = "idx_position", columnList = "pos_x, pos_y"),
-    @Index(name = "idx_creation_date", columnList = "creation_date")
+    @Index(name = "idx_creation_date", columnList = "creation_date"),
+    @Index(name = "idx_grid_cell", columnList = "grid_cell")
 })
 @Data
 @NoArgsConstructor
@@ -19,8 +25,21 @@ import java.time.LocalDateTime;
 @Builder
 public class BankBranch {
 
+    public static final String PREFIXO_NOME = "AGENCIA_";
+
+    /**
+     * Ids come from a pooled sequence (allocationSize 50), and branch names are derived from them
+     * ("AGENCIA_" + id). Names are therefore unique but not contiguous: a rolled-back registration,
+     * a restart that discards the rest of an allocated block, or another node holding its own block
+     * all leave gaps, and name order follows allocation order rather than commit order.
+     * The name is set by BankBranchIdGenerator together with the id, so it is part of the INSERT.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "bankbranch_seq")
+    @GenericGenerator(name = "bankbranch_seq", type = BankBranchIdGenerator.class, parameters = {
+        @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "bankbranch_seq"),
+        @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")
+    })
     private Long id;
 
     @Column(name = "pos_x", nullable = false)
@@ -31,10 +50,23 @@ public class BankBranch {
     @NotNull(message = "Posição Y é obrigatória")
     private Double posY;
 
-    @Column(name = "name", nullable = true, length = 100)
+    @Column(name = "name", nullable = false, length = 100)
     private String name;
 
     @Column(name = "creation_date", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime creationDate = LocalDateTime.now();
+
+    @Column(name = "grid_cell", nullable = false)
+    private Long gridCell;
+
+    public static String nomeDaAgencia(Long id) {
+        return PREFIXO_NOME + id;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void atualizarGridCell() {
+        gridCell = GridCell.of(posX, posY);
+    }
 }
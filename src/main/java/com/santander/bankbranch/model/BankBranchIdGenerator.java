@@ -0,0 +1,21 @@
+package com.santander.bankbranch.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * bankbranch_seq (pooled, like a plain @SequenceGenerator) that also names the branch after the id
+ * it hands out. Hibernate reads the entity state for the INSERT after the id is generated, so the
+ * name goes out with the INSERT instead of in an UPDATE at flush.
+ */
+public class BankBranchIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        Object id = super.generate(session, object);
+        if (object instanceof BankBranch agencia && agencia.getName() == null) {
+            agencia.setName(BankBranch.nomeDaAgencia(((Number) id).longValue()));
+        }
+        return id;
+    }
+}
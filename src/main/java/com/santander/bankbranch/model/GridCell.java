@@ -0,0 +1,50 @@
+package com.santander.bankbranch.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Square grid over the coordinate plane whose side equals the minimum distance
+ * allowed between branches, so any branch within that distance of a point lies
+ * in the 3x3 block of cells around it.
+ */
+public final class GridCell {
+
+    public static final double DISTANCIA_MINIMA_ENTRE_AGENCIAS = 0.1;
+    public static final double TAMANHO_CELULA = DISTANCIA_MINIMA_ENTRE_AGENCIAS;
+
+    private GridCell() {
+    }
+
+    public static long of(double posX, double posY) {
+        return chave(celula(posX), celula(posY));
+    }
+
+    public static int celula(double coordenada) {
+        return (int) Math.floor(coordenada / TAMANHO_CELULA);
+    }
+
+    public static long chave(int celulaX, int celulaY) {
+        return ((long) celulaX << 32) | (celulaY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Cells overlapping the bounding box [minX, maxX] x [minY, maxY]. Floor division is
+     * monotonic, so every stored point inside the box maps to one of these cells; with a
+     * box of side 2 * TAMANHO_CELULA this is at most the 3x3 neighbourhood.
+     */
+    public static List<Long> vizinhanca(double minX, double minY, double maxX, double maxY) {
+        int inicioX = celula(minX);
+        int fimX = celula(maxX);
+        int inicioY = celula(minY);
+        int fimY = celula(maxY);
+
+        List<Long> celulas = new ArrayList<>((fimX - inicioX + 1) * (fimY - inicioY + 1));
+        for (int celulaX = inicioX; celulaX <= fimX; celulaX++) {
+            for (int celulaY = inicioY; celulaY <= fimY; celulaY++) {
+                celulas.add(chave(celulaX, celulaY));
+            }
+        }
+        return celulas;
+    }
+}
@@ -1,14 +1,19 @@
 package com.santander.bankbranch.repository;
 
 import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -18,7 +23,7 @@ public interface BankBranchRepository extends JpaRepository<BankBranch, Long> {
         SELECT a.id, a.name, a.pos_x, a.pos_y, a.creation_date,
                SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) as distancia
         FROM bankbranch a 
-        ORDER BY distancia ASC 
+        ORDER BY distancia ASC, a.id ASC
         LIMIT :limite
         """, nativeQuery = true)
     List<Object[]> findNearbyBankBranchesLimits(@Param("posX") Double posX,
@@ -29,22 +34,127 @@ public interface BankBranchRepository extends JpaRepository<BankBranch, Long> {
         SELECT a.id, a.name, a.pos_x, a.pos_y, a.creation_date,
                SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) as distancia
         FROM bankbranch a 
-        ORDER BY distancia ASC 
+        ORDER BY distancia ASC, a.id ASC
         """, nativeQuery = true)
     List<Object[]> findNearbyBankBranches(@Param("posX") Double posX,
                                           @Param("posY") Double posY);
 
+    /**
+     * Same rows as findNearbyBankBranches, read lazily in blocks of fetch size. Must be
+     * consumed (and closed) inside a transaction.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
     @Query(value = """
-        SELECT COUNT(*) > 0
+        SELECT a.id, a.name, a.pos_x, a.pos_y, a.creation_date,
+               SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) as distancia
         FROM bankbranch a 
-        WHERE SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) <= :distanciaMinima
+        ORDER BY distancia ASC, a.id ASC
+        """, nativeQuery = true)
+    Stream<Object[]> streamNearbyBankBranches(@Param("posX") Double posX,
+                                              @Param("posY") Double posY);
+
+    /**
+     * id, pos_x, pos_y and creation_date of every branch, for loading the spatial index.
+     * Must be consumed (and closed) inside a transaction.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = """
+        SELECT a.id, a.pos_x, a.pos_y, a.creation_date
+        FROM bankbranch a
+        """, nativeQuery = true)
+    Stream<Object[]> streamBranchPoints();
+
+    /** Same columns as streamBranchPoints, for rows created since {@code desde} (idx_creation_date). */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = """
+        SELECT a.id, a.pos_x, a.pos_y, a.creation_date
+        FROM bankbranch a
+        WHERE a.creation_date >= :desde
+        """, nativeQuery = true)
+    Stream<Object[]> streamBranchPointsCreatedSince(@Param("desde") LocalDateTime desde);
+
+    /**
+     * Same columns as streamBranchPoints: up to {@code limite} rows after ({@code desde}, {@code id})
+     * in (creation_date, id) order. One page of a keyset scan over idx_creation_date.
+     */
+    @Query(value = """
+        SELECT a.id, a.pos_x, a.pos_y, a.creation_date
+        FROM bankbranch a
+        WHERE a.creation_date >= :desde AND (a.creation_date > :desde OR a.id > :id)
+        ORDER BY a.creation_date, a.id
+        LIMIT :limite
         """, nativeQuery = true)
-    boolean existsNearbyBankBranches(@Param("posX") Double posX,
-                                 @Param("posY") Double posY,
-                                 @Param("distanciaMinima") Double distanciaMinima);
+    List<Object[]> findBranchPointsCreatedAfter(@Param("desde") LocalDateTime desde,
+                                                @Param("id") long id,
+                                                @Param("limite") int limite);
+
+    /** Newest creation_date in the table, or null when it is empty; read from the end of idx_creation_date. */
+    @Query("SELECT MAX(a.creationDate) FROM BankBranch a")
+    LocalDateTime findNewestCreationDate();
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT COUNT(a) FROM BankBranch a")
-    long countComLock();
+    default List<Object[]> findNearbyBankBranchesWithinRadius(Double posX, Double posY, Double raio, Integer limite) {
+        return findNearbyBankBranchesInBox(posX, posY, posX - raio, posX + raio, posY - raio, posY + raio, raio, limite);
+    }
+
+    @Query(value = """
+        SELECT a.id, a.name, a.pos_x, a.pos_y, a.creation_date,
+               SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) as distancia
+        FROM bankbranch a 
+        WHERE a.pos_x BETWEEN :minX AND :maxX
+          AND a.pos_y BETWEEN :minY AND :maxY
+          AND SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) <= :raio
+        ORDER BY distancia ASC, a.id ASC
+        LIMIT :limite
+        """, nativeQuery = true)
+    List<Object[]> findNearbyBankBranchesInBox(@Param("posX") Double posX,
+                                               @Param("posY") Double posY,
+                                               @Param("minX") Double minX,
+                                               @Param("maxX") Double maxX,
+                                               @Param("minY") Double minY,
+                                               @Param("maxY") Double maxY,
+                                               @Param("raio") Double raio,
+                                               @Param("limite") Integer limite);
+
+    @Query(value = """
+        SELECT a.pos_x, a.pos_y
+        FROM bankbranch a 
+        WHERE a.grid_cell IN (:celulas)
+        """, nativeQuery = true)
+    List<Object[]> findPositionsInCells(@Param("celulas") Collection<Long> celulas);
+
+    default boolean existsNearbyBankBranches(Double posX, Double posY, Double distanciaMinima) {
+        double minX = posX - distanciaMinima;
+        double maxX = posX + distanciaMinima;
+        double minY = posY - distanciaMinima;
+        double maxY = posY + distanciaMinima;
+        return existsNearbyBankBranchesInCells(GridCell.vizinhanca(minX, minY, maxX, maxY),
+                minX, maxX, minY, maxY, posX, posY, distanciaMinima);
+    }
+
+    @Query(value = """
+        SELECT COUNT(*) > 0
+        FROM bankbranch a 
+        WHERE a.grid_cell IN (:celulas)
+          AND a.pos_x BETWEEN :minX AND :maxX
+          AND a.pos_y BETWEEN :minY AND :maxY
+          AND SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2)) <= :distanciaMinima
+        """, nativeQuery = true)
+    boolean existsNearbyBankBranchesInCells(@Param("celulas") Collection<Long> celulas,
+                                            @Param("minX") Double minX,
+                                            @Param("maxX") Double maxX,
+                                            @Param("minY") Double minY,
+                                            @Param("maxY") Double maxY,
+                                            @Param("posX") Double posX,
+                                            @Param("posY") Double posY,
+                                            @Param("distanciaMinima") Double distanciaMinima);
 
 }
@@ -0,0 +1,106 @@
+package com.santander.bankbranch.repository;
+
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Plain JDBC version of the distance reads of {@link BankBranchRepository}, enabled with
+ * {@code bankbranch.leitura.implementacao=jdbc}. Same SQL and ordering, but only the name and
+ * the distance are selected, and rows are read with a callback straight into the
+ * primitive-backed {@link BranchDistanceMap}: no Object[], boxed numbers or Timestamp per row.
+ *
+ * The SQL strings are constants with no expanded IN lists, so the driver's per-connection
+ * statement cache (H2's QUERY_CACHE_SIZE, see application.yml) reuses the parsed statement.
+ */
+@Repository
+@ConditionalOnProperty(name = "bankbranch.leitura.implementacao", havingValue = "jdbc")
+public class JdbcBankBranchReadRepository {
+
+    private static final String DISTANCIA = "SQRT(POWER(a.pos_x - :posX, 2) + POWER(a.pos_y - :posY, 2))";
+
+    private static final String SQL_TODAS = """
+        SELECT a.name, %s AS distancia
+        FROM bankbranch a
+        ORDER BY distancia ASC, a.id ASC
+        """.formatted(DISTANCIA);
+
+    private static final String SQL_LIMITE = """
+        SELECT a.name, %s AS distancia
+        FROM bankbranch a
+        ORDER BY distancia ASC, a.id ASC
+        LIMIT :limite
+        """.formatted(DISTANCIA);
+
+    private static final String SQL_RAIO = """
+        SELECT a.name, %s AS distancia
+        FROM bankbranch a
+        WHERE a.pos_x BETWEEN :minX AND :maxX
+          AND a.pos_y BETWEEN :minY AND :maxY
+          AND %s <= :raio
+        ORDER BY distancia ASC, a.id ASC
+        LIMIT :limite
+        """.formatted(DISTANCIA, DISTANCIA);
+
+    private final JdbcClient jdbcClient;
+
+    public JdbcBankBranchReadRepository(DataSource dataSource,
+                                        @Value("${bankbranch.leitura.jdbc.fetch-size:500}") int fetchSize) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        this.jdbcClient = JdbcClient.create(jdbcTemplate);
+    }
+
+    public BranchDistanceMap findNearbyBankBranches(double posX, double posY) {
+        BranchDistanceMap agencias = new BranchDistanceMap(16);
+        streamNearbyBankBranches(posX, posY, agencias::add);
+        return agencias;
+    }
+
+    public BranchDistanceMap findNearbyBankBranchesLimits(double posX, double posY, int limite) {
+        BranchDistanceMap agencias = new BranchDistanceMap(Math.min(limite, 1024));
+        jdbcClient.sql(SQL_LIMITE)
+                .param("posX", posX)
+                .param("posY", posY)
+                .param("limite", limite)
+                .query(rs -> { agencias.add(rs.getString(1), rs.getDouble(2)); });
+        return agencias;
+    }
+
+    public BranchDistanceMap findNearbyBankBranchesWithinRadius(double posX, double posY, double raio, int limite) {
+        BranchDistanceMap agencias = new BranchDistanceMap(Math.min(limite, 1024));
+        jdbcClient.sql(SQL_RAIO)
+                .param("posX", posX)
+                .param("posY", posY)
+                .param("minX", posX - raio)
+                .param("maxX", posX + raio)
+                .param("minY", posY - raio)
+                .param("maxY", posY + raio)
+                .param("raio", raio)
+                .param("limite", limite)
+                .query(rs -> { agencias.add(rs.getString(1), rs.getDouble(2)); });
+        return agencias;
+    }
+
+    /**
+     * Hands every branch, ordered by distance, to the consumer while the result set is read.
+     * Returns the number of rows.
+     */
+    public long streamNearbyBankBranches(double posX, double posY, ObjDoubleConsumer<String> consumidor) {
+        long[] total = new long[1];
+        jdbcClient.sql(SQL_TODAS)
+                .param("posX", posX)
+                .param("posY", posY)
+                .query(rs -> {
+                    consumidor.accept(rs.getString(1), rs.getDouble(2));
+                    total[0]++;
+                });
+        return total[0];
+    }
+}
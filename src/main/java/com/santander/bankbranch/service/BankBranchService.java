@@ -1,94 +1,430 @@
 package com.santander.bankbranch.service;
 
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
 import com.santander.bankbranch.dto.RegisterBankBranchRequest;
 import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.dto.CompactDistanceResponse;
+import com.santander.bankbranch.dto.DistanceBatchRequest;
+import com.santander.bankbranch.dto.DistanceBatchResponse;
+import com.santander.bankbranch.dto.DistanceBankBranchLine;
 import com.santander.bankbranch.dto.DistanceBankBranchResponse;
 import com.santander.bankbranch.dto.DistanciaResponse;
+import com.santander.bankbranch.dto.DistanceFormat;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchDistances;
+import com.santander.bankbranch.index.BranchSnapshotFile;
+import com.santander.bankbranch.index.ColumnarBranchStore;
 import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
 import com.santander.bankbranch.repository.BankBranchRepository;
+import com.santander.bankbranch.repository.JdbcBankBranchReadRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.LinkedHashMap;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class BankBranchService {
 
     private static final Logger logger = LoggerFactory.getLogger(BankBranchService.class);
-    private static final Double DISTANCIA_MINIMA_ENTRE_AGENCIAS = 0.1;
+    private static final Double DISTANCIA_MINIMA_ENTRE_AGENCIAS = GridCell.DISTANCIA_MINIMA_ENTRE_AGENCIAS;
+    private static final int LIMITE_PADRAO_AGENCIAS = 1000;
+    private static final int CELULAS_POR_CONSULTA = 1000;
+    private static final String RESULTADO_SUCESSO = "success";
+    private static final String RESULTADO_MUITO_PROXIMA = "too-close";
+    private static final String RESULTADO_ERRO = "error";
 
     @Autowired
     private BankBranchRepository bankBranchRepository;
 
+    @Autowired
+    private BankBranchSpatialIndex spatialIndex;
+
+    @Autowired
+    private DistanceQueryCache distanceQueryCache;
+
+    @Autowired
+    private GridCellLocks gridCellLocks;
+
+    // Only present with bankbranch.leitura.implementacao=jdbc
+    @Autowired(required = false)
+    private JdbcBankBranchReadRepository jdbcReadRepository;
+
+    // Only present with bankbranch.snapshot.enabled=true
+    @Autowired(required = false)
+    private BranchSnapshotService snapshotService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bankbranch.index.enabled:true}")
+    private boolean indiceHabilitado;
+
+    @Value("${bankbranch.lote.tamanho-maximo:5000}")
+    private int tamanhoMaximoLote = 5000;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadSpatialIndex() {
+        if (!indiceHabilitado) {
+            logger.info("Spatial index disabled, distance searches will use the database");
+            return;
+        }
+
+        try {
+            BranchSnapshotFile.Snapshot snapshot = snapshotService == null ? null : snapshotService.takeRestored();
+            ColumnarBranchStore agencias;
+            String origem;
+            if (snapshot != null) {
+                agencias = snapshot.branches();
+                int reaplicadas = reaplicarRecentes(agencias, snapshotService.replayFrom(snapshot));
+                origem = String.format("%d from the snapshot, %d replayed from the database", agencias.size() - reaplicadas, reaplicadas);
+            } else {
+                agencias = carregarDoBanco();
+                origem = "loaded from the database";
+            }
+            spatialIndex.load(agencias);
+            logger.info("Spatial index ready with {} branches ({}), {} ms after JVM start",
+                    agencias.size(), origem, ManagementFactory.getRuntimeMXBean().getUptime());
+        } catch (Exception e) {
+            logger.error("Error loading spatial index, falling back to the database: {}", e.getMessage(), e);
+        }
+    }
+
+    private ColumnarBranchStore carregarDoBanco() {
+        // Straight into the columns: no BankBranch entity or Object[] list for the whole table
+        ColumnarBranchStore agencias = new ColumnarBranchStore();
+        try (Stream<Object[]> linhas = bankBranchRepository.streamBranchPoints()) {
+            for (Object[] linha : (Iterable<Object[]>) linhas::iterator) {
+                adicionarLinha(agencias, linha);
+            }
+        }
+        return agencias;
+    }
+
+    private int reaplicarRecentes(ColumnarBranchStore agencias, LocalDateTime desde) {
+        long desdeNanos = ColumnarBranchStore.toEpochNanos(desde);
+        Set<Long> conhecidas = new HashSet<>();
+        for (int i = 0; i < agencias.size(); i++) {
+            if (agencias.creationEpochNanos(i) >= desdeNanos) {
+                conhecidas.add(agencias.id(i));
+            }
+        }
+
+        int reaplicadas = 0;
+        try (Stream<Object[]> linhas = bankBranchRepository.streamBranchPointsCreatedSince(desde)) {
+            for (Object[] linha : (Iterable<Object[]>) linhas::iterator) {
+                if (!conhecidas.contains(((Number) linha[0]).longValue())) {
+                    adicionarLinha(agencias, linha);
+                    reaplicadas++;
+                }
+            }
+        }
+        return reaplicadas;
+    }
+
+    private static void adicionarLinha(ColumnarBranchStore agencias, Object[] linha) {
+        agencias.add(((Number) linha[0]).longValue(),
+                ((Number) linha[1]).doubleValue(),
+                ((Number) linha[2]).doubleValue(),
+                ((Timestamp) linha[3]).toLocalDateTime());
+    }
+
     @Transactional
     public RegisterBankBranchResponse registerBankBranch(RegisterBankBranchRequest request) {
-        if (request == null || request.posX() == null || request.posY() == null) {
-            throw new IllegalArgumentException("Parâmetros posX e posY são obrigatórios");
-        }
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = RESULTADO_ERRO;
+        GridCellLocks.Bloqueio bloqueio = null;
+        try {
+            if (request == null || request.posX() == null || request.posY() == null) {
+                throw new IllegalArgumentException("Parâmetros posX e posY são obrigatórios");
+            }
 
-        logger.info("Starting branch registration at position ({}, {})", request.posX(), request.posY());
+            logger.info("Starting branch registration at position ({}, {})", request.posX(), request.posY());
 
-        if (bankBranchRepository.existsNearbyBankBranches(request.posX(), request.posY(), DISTANCIA_MINIMA_ENTRE_AGENCIAS)) {
-            logger.warn("Attempting to register a branch very close to an existing one at position ({}, {})",
-                    request.posX(), request.posY());
-            throw new IllegalArgumentException(
-                    //String.format("Já existe uma agência próxima a esta posição. Distância mínima permitida: %.1f unidades", DISTANCIA_MINIMA_ENTRE_AGENCIAS)
-                    String.format("There is already a branch close to this position. Minimum distance allowed: %.1f units", DISTANCIA_MINIMA_ENTRE_AGENCIAS)
+            // Held until commit, so a registration nearby waits and then sees this one
+            bloqueio = gridCellLocks.lockForTransaction(vizinhanca(request.posX(), request.posY()));
+
+            if (bankBranchRepository.existsNearbyBankBranches(request.posX(), request.posY(), DISTANCIA_MINIMA_ENTRE_AGENCIAS)) {
+                logger.warn("Attempting to register a branch very close to an existing one at position ({}, {})",
+                        request.posX(), request.posY());
+                resultado = RESULTADO_MUITO_PROXIMA;
+                contarRejeicaoPorProximidade("single", "existing");
+                throw new IllegalArgumentException(
+                        //String.format("Já existe uma agência próxima a esta posição. Distância mínima permitida: %.1f unidades", DISTANCIA_MINIMA_ENTRE_AGENCIAS)
+                        String.format("There is already a branch close to this position. Minimum distance allowed: %.1f units", DISTANCIA_MINIMA_ENTRE_AGENCIAS)
+                );
+            }
+
+            BankBranch bankBranch = BankBranch.builder()
+                    .posX(request.posX())
+                    .posY(request.posY())
+                    .build();
+            // The id and the name derived from it come from bankbranch_seq when the entity is persisted
+            bankBranch = bankBranchRepository.save(bankBranch);
+
+            logger.info("Branch successfully registered - ID: {}, Nome: {}", bankBranch.getId(), bankBranch.getName());
+
+            resultado = RESULTADO_SUCESSO;
+            return new RegisterBankBranchResponse(
+                    bankBranch.getId(),
+                    bankBranch.getName(),
+                    bankBranch.getPosX(),
+                    bankBranch.getPosY(),
+                    bankBranch.getCreationDate(),
+                    "Branch registered successfully!"
             );
+        } finally {
+            if (bloqueio != null) {
+                bloqueio.close();
+            }
+            registrarTempo(amostra, "bankbranch.register", resultado);
+        }
+    }
+
+    /**
+     * Registers a batch of branches in one transaction. Every item is checked against the
+     * existing branches (one grid-cell query per CELULAS_POR_CONSULTA cells) and against the
+     * items accepted before it in the same batch; inserts are sent with JDBC batching.
+     * The grid cells around every item stay locked until the transaction ends.
+     * Results are returned per item, in request order.
+     */
+    @Transactional
+    public RegisterBankBranchBatchResponse registerBankBranches(List<RegisterBankBranchRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("The batch must contain at least one branch");
         }
+        if (requests.size() > tamanhoMaximoLote) {
+            throw new IllegalArgumentException(
+                    String.format("The batch exceeds the maximum size of %d branches", tamanhoMaximoLote));
+        }
+
+        logger.info("Starting batch registration of {} branches", requests.size());
+
+        Set<Long> celulas = celulasDoLote(requests);
+        try (GridCellLocks.Bloqueio bloqueio = gridCellLocks.lockForTransaction(celulas)) {
+            return cadastrarLote(requests, carregarPosicoesExistentes(celulas));
+        }
+    }
 
-        long proximoId = bankBranchRepository.countComLock() + 1;
-        String nomeAgencia = "AGENCIA_" + proximoId;
+    private RegisterBankBranchBatchResponse cadastrarLote(List<RegisterBankBranchRequest> requests,
+                                                          Map<Long, List<double[]>> existentes) {
+        Map<Long, List<double[]>> aceitas = new HashMap<>();
+        RegisterBankBranchResponse[] resultados = new RegisterBankBranchResponse[requests.size()];
+        List<BankBranch> novas = new ArrayList<>();
+        List<Integer> posicoesNovas = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            RegisterBankBranchRequest request = requests.get(i);
+            String erro = validarItemLote(request);
+            if (erro == null && existeProxima(existentes, request.posX(), request.posY())) {
+                erro = String.format("There is already a branch close to this position. Minimum distance allowed: %.1f units", DISTANCIA_MINIMA_ENTRE_AGENCIAS);
+                contarRejeicaoPorProximidade("batch", "existing");
+            }
+            if (erro == null && existeProxima(aceitas, request.posX(), request.posY())) {
+                erro = String.format("Another branch in this batch is close to this position. Minimum distance allowed: %.1f units", DISTANCIA_MINIMA_ENTRE_AGENCIAS);
+                contarRejeicaoPorProximidade("batch", "batch");
+            }
 
-        BankBranch bankBranch = BankBranch.builder()
-                .name(nomeAgencia)
-                .posX(request.posX())
-                .posY(request.posY())
-                .build();
-        bankBranch = bankBranchRepository.save(bankBranch);
+            if (erro != null) {
+                resultados[i] = new RegisterBankBranchResponse(
+                        null,
+                        null,
+                        request == null ? null : request.posX(),
+                        request == null ? null : request.posY(),
+                        null,
+                        "Error: " + erro
+                );
+                continue;
+            }
 
-        logger.info("Branch successfully registered - ID: {}, Nome: {}", bankBranch.getId(), bankBranch.getName());
+            aceitas.computeIfAbsent(GridCell.of(request.posX(), request.posY()), celula -> new ArrayList<>())
+                    .add(new double[]{request.posX(), request.posY()});
+            novas.add(BankBranch.builder()
+                    .posX(request.posX())
+                    .posY(request.posY())
+                    .build());
+            posicoesNovas.add(i);
+        }
 
-        return new RegisterBankBranchResponse(
-                bankBranch.getId(),
-                bankBranch.getName(),
-                bankBranch.getPosX(),
-                bankBranch.getPosY(),
-                bankBranch.getCreationDate(),
-                "Branch registered successfully!"
+        List<BankBranch> salvas = bankBranchRepository.saveAll(novas);
+        for (int i = 0; i < salvas.size(); i++) {
+            BankBranch bankBranch = salvas.get(i);
+            resultados[posicoesNovas.get(i)] = new RegisterBankBranchResponse(
+                    bankBranch.getId(),
+                    bankBranch.getName(),
+                    bankBranch.getPosX(),
+                    bankBranch.getPosY(),
+                    bankBranch.getCreationDate(),
+                    "Branch registered successfully!"
+            );
+        }
+
+        logger.info("Batch registration finished - {} registered, {} rejected",
+                salvas.size(), requests.size() - salvas.size());
+
+        return new RegisterBankBranchBatchResponse(
+                List.of(resultados),
+                salvas.size(),
+                requests.size() - salvas.size()
         );
     }
 
     @Transactional(readOnly = true)
     public DistanciaResponse findNearbyBankBranches(Double posX, Double posY) {
+        return findNearbyBankBranches(posX, posY, null, null);
+    }
+
+    /**
+     * Nearest branches bounded by {@code k} and/or {@code raio}. Without either bound the
+     * search keeps the historical cap of LIMITE_PADRAO_AGENCIAS results.
+     */
+    @Transactional(readOnly = true)
+    public DistanciaResponse findNearbyBankBranches(Double posX, Double posY, Integer k, Double raio) {
         if (posX == null || posY == null) {
             throw new IllegalArgumentException("Parâmetros posX e posY são obrigatórios");
         }
+        if (k != null && k < 1) {
+            throw new IllegalArgumentException("Parameter k must be greater than or equal to 1");
+        }
+        if (raio != null && (raio.isNaN() || raio < 0)) {
+            throw new IllegalArgumentException("Parameter raio must be greater than or equal to 0");
+        }
 
-        logger.info("Searching for branches near the position ({}, {})", posX, posY);
+        int limite = k != null ? k : (raio != null ? Integer.MAX_VALUE : LIMITE_PADRAO_AGENCIAS);
 
-        try {
-            List<Object[]> resultados = bankBranchRepository.findNearbyBankBranchesLimits(
-                    posX, posY, 1000
-            );
+        logger.info("Searching for branches near the position ({}, {}) with k={} and raio={}", posX, posY, k, raio);
 
-            DistanciaResponse response = processarResultadosAgencias(resultados, posX, posY);
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = RESULTADO_ERRO;
+        try {
+            DistanciaResponse response;
+            if (usarIndice()) {
+                double raioBusca = raio != null ? raio : Double.POSITIVE_INFINITY;
+                response = processarResultadosIndice(spatialIndex.findNearest(posX, posY, limite, raioBusca), posX, posY);
+            } else if (jdbcReadRepository != null) {
+                BranchDistanceMap agencias = raio != null
+                        ? jdbcReadRepository.findNearbyBankBranchesWithinRadius(posX, posY, raio, limite)
+                        : jdbcReadRepository.findNearbyBankBranchesLimits(posX, posY, limite);
+                response = processarMapaAgencias(agencias, posX, posY);
+            } else {
+                List<Object[]> resultados = raio != null
+                        ? bankBranchRepository.findNearbyBankBranchesWithinRadius(posX, posY, raio, limite)
+                        : bankBranchRepository.findNearbyBankBranchesLimits(posX, posY, limite);
+                response = processarResultadosAgencias(resultados, posX, posY);
+            }
 
             logger.info("Found {} branches near the position ({}, {})",
                     response.totalAgencias(), posX, posY);
 
+            resultado = RESULTADO_SUCESSO;
             return response;
 
         } catch (Exception e) {
             logger.error("Error searching for nearby branches: {}", e.getMessage(), e);
             throw new RuntimeException("Internal error searching for nearby branches", e);
+        } finally {
+            registrarTempo(amostra, "bankbranch.find.nearest", resultado);
+        }
+    }
+
+    /**
+     * Nearest {@code k} branches (LIMITE_PADRAO_AGENCIAS when null) of every point, in request
+     * order, each in the shape of findNearbyBankBranches. From the spatial index the points are
+     * searched in parallel under a single read lock, so they all see the same branch set. From
+     * the database they run one after the other inside one repeatable-read transaction.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public DistanceBatchResponse findNearbyBankBranchesBatch(DistanceBatchRequest request) {
+        List<DistanceBatchRequest.Ponto> pontos = request == null ? null : request.pontos();
+        if (pontos == null || pontos.isEmpty()) {
+            throw new IllegalArgumentException("The batch must contain at least one point");
+        }
+        if (pontos.size() > tamanhoMaximoLote) {
+            throw new IllegalArgumentException(
+                    String.format("The batch exceeds the maximum size of %d points", tamanhoMaximoLote));
+        }
+        if (request.k() != null && request.k() < 1) {
+            throw new IllegalArgumentException("Parameter k must be greater than or equal to 1");
+        }
+        double[] xs = new double[pontos.size()];
+        double[] ys = new double[pontos.size()];
+        for (int i = 0; i < pontos.size(); i++) {
+            DistanceBatchRequest.Ponto ponto = pontos.get(i);
+            String erro = ponto == null ? "Parameters posX and posY are mandatory"
+                    : validarItemLote(new RegisterBankBranchRequest(ponto.posX(), ponto.posY()));
+            if (erro != null) {
+                throw new IllegalArgumentException(String.format("Point %d: %s", i, erro));
+            }
+            xs[i] = ponto.posX();
+            ys[i] = ponto.posY();
+        }
+        int limite = request.k() != null ? request.k() : LIMITE_PADRAO_AGENCIAS;
+
+        logger.info("Searching for the {} nearest branches of {} points", limite, pontos.size());
+
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = RESULTADO_ERRO;
+        try {
+            DistanciaResponse[] resultados = new DistanciaResponse[pontos.size()];
+            if (usarIndice()) {
+                BranchDistances[] encontradas = spatialIndex.findNearest(xs, ys, limite, Double.POSITIVE_INFINITY);
+                IntStream.range(0, resultados.length)
+                        .parallel()
+                        .forEach(i -> resultados[i] = processarResultadosIndice(encontradas[i], xs[i], ys[i]));
+            } else {
+                for (int i = 0; i < resultados.length; i++) {
+                    resultados[i] = jdbcReadRepository != null
+                            ? processarMapaAgencias(jdbcReadRepository.findNearbyBankBranchesLimits(xs[i], ys[i], limite), xs[i], ys[i])
+                            : processarResultadosAgencias(bankBranchRepository.findNearbyBankBranchesLimits(xs[i], ys[i], limite), xs[i], ys[i]);
+                }
+            }
+            resultado = RESULTADO_SUCESSO;
+            return new DistanceBatchResponse(List.of(resultados), resultados.length);
+        } finally {
+            registrarTempo(amostra, "bankbranch.find.batch", resultado);
+        }
+    }
+
+    /**
+     * Entity tag of the /desafio/distancia response for these parameters. It is taken from the
+     * data version, which changes after every committed registration, and from the position the
+     * response is computed at, so it is known without running the search. Read it before the
+     * search: a registration committed in between then only costs the client one extra download.
+     */
+    public String distanceETag(Double posX, Double posY, Integer k, Double raio) {
+        if (posX == null || posY == null) {
+            throw new IllegalArgumentException("Parameters posX and posY are mandatory");
         }
+        // Only the search without k/raio goes through the cache, at the rounded position
+        String posicao = k == null && raio == null
+                ? distanceQueryCache.positionKey(posX, posY)
+                : posX + "," + posY + "," + k + "," + raio;
+        return "\"" + distanceQueryCache.versionTag() + "-" + posicao + "\"";
     }
 
     @Transactional(readOnly = true)
@@ -99,36 +435,136 @@ public class BankBranchService {
 
         logger.info("Searching for branches at the position ({}, {})", posX, posY);
 
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = RESULTADO_ERRO;
         try {
-            List<Object[]> resultados = bankBranchRepository.findNearbyBankBranches(
-                    posX, posY
-            );
-
-            DistanceBankBranchResponse response = processarResultadosAgenciasSimples(resultados, posX, posY);
-
-
-
+            DistanceBankBranchResponse response = distanceQueryCache.isEnabled()
+                    ? distanceQueryCache.get(posX, posY, this::buscarAgencias)
+                    : buscarAgencias(posX, posY);
+            resultado = RESULTADO_SUCESSO;
             return response;
 
         } catch (Exception e) {
             logger.error("Error searching for nearby branches: {}", e.getMessage(), e);
             throw new RuntimeException("Internal error searching for nearby branches", e);
+        } finally {
+            registrarTempo(amostra, "bankbranch.find", resultado);
+        }
+    }
+
+    /**
+     * Every branch ordered by distance, as ids and distances only (the v2 representation):
+     * no names and no distance text are produced.
+     */
+    @Transactional(readOnly = true)
+    public CompactDistanceResponse findBankBranchesCompact(Double posX, Double posY) {
+        if (posX == null || posY == null) {
+            throw new IllegalArgumentException("Parameters posX and posY are mandatory");
+        }
+
+        logger.info("Searching for branches at the position ({}, {}) in the compact representation", posX, posY);
+
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = RESULTADO_ERRO;
+        try {
+            BranchDistances agencias;
+            if (usarIndice()) {
+                agencias = spatialIndex.findOrdered(posX, posY);
+            } else {
+                agencias = new BranchDistances(LIMITE_PADRAO_AGENCIAS);
+                try (Stream<Object[]> resultados = bankBranchRepository.streamNearbyBankBranches(posX, posY)) {
+                    for (Object[] linha : (Iterable<Object[]>) resultados::iterator) {
+                        agencias.add(((Number) linha[0]).longValue(), ((Number) linha[5]).doubleValue());
+                    }
+                }
+            }
+            resultado = RESULTADO_SUCESSO;
+            return new CompactDistanceResponse(posX, posY, agencias.ids(), agencias.distances());
+        } finally {
+            registrarTempo(amostra, "bankbranch.find", resultado);
         }
     }
 
+    /**
+     * Streams every branch ordered by distance to the consumer. From the database, rows are
+     * written as they are read, without building the full result in memory; from the spatial
+     * index, only ids and distances are held. Returns the number of rows.
+     */
+    @Transactional(readOnly = true)
+    public long streamBankBranches(Double posX, Double posY, Consumer<DistanceBankBranchLine> consumidor) {
+        if (posX == null || posY == null) {
+            throw new IllegalArgumentException("Parameters posX and posY are mandatory");
+        }
+
+        logger.info("Streaming branches at the position ({}, {})", posX, posY);
+
+        if (usarIndice()) {
+            // Sorted under the index read lock, written out after it is released
+            BranchDistances resultados = spatialIndex.findOrdered(posX, posY);
+            for (int i = 0; i < resultados.size(); i++) {
+                consumidor.accept(new DistanceBankBranchLine(resultados.name(i), DistanceFormat.format(resultados.distance(i))));
+            }
+            logger.info("Streamed {} branches at the position ({}, {}) from the spatial index", resultados.size(), posX, posY);
+            return resultados.size();
+        }
+
+        if (jdbcReadRepository != null) {
+            long total = jdbcReadRepository.streamNearbyBankBranches(posX, posY, (nome, distancia) ->
+                    consumidor.accept(new DistanceBankBranchLine(nome, DistanceFormat.format(distancia))));
+            logger.info("Streamed {} branches at the position ({}, {})", total, posX, posY);
+            return total;
+        }
+
+        long total = 0;
+        try (Stream<Object[]> resultados = bankBranchRepository.streamNearbyBankBranches(posX, posY)) {
+            for (Object[] resultado : (Iterable<Object[]>) resultados::iterator) {
+                consumidor.accept(new DistanceBankBranchLine(
+                        (String) resultado[1],
+                        DistanceFormat.format(((Number) resultado[5]).doubleValue())
+                ));
+                total++;
+            }
+        }
+
+        logger.info("Streamed {} branches at the position ({}, {})", total, posX, posY);
+        return total;
+    }
+
+    private void registrarTempo(Timer.Sample amostra, String nome, String resultado) {
+        amostra.stop(Timer.builder(nome)
+                .tag("outcome", resultado)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void contarRejeicaoPorProximidade(String origem, String conflito) {
+        meterRegistry.counter("bankbranch.proximity.rejections", "source", origem, "conflict", conflito).increment();
+    }
+
+    private DistanceBankBranchResponse buscarAgencias(Double posX, Double posY) {
+        if (usarIndice()) {
+            return processarResultadosIndiceSimples(spatialIndex.findOrdered(posX, posY));
+        }
+        if (jdbcReadRepository != null) {
+            return new DistanceBankBranchResponse(jdbcReadRepository.findNearbyBankBranches(posX, posY));
+        }
+
+        List<Object[]> resultados = bankBranchRepository.findNearbyBankBranches(
+                posX, posY
+        );
+
+        return processarResultadosAgenciasSimples(resultados);
+    }
 
     private DistanciaResponse processarResultadosAgencias(List<Object[]> resultados, Double posX, Double posY) {
-        Map<String, String> agencias = new LinkedHashMap<>();
+        BranchDistanceMap agencias = new BranchDistanceMap(resultados.size());
         String agenciaMaisProxima = null;
-        Double menorDistancia = null;
+        double menorDistancia = Double.POSITIVE_INFINITY;
 
         for (Object[] resultado : resultados) {
-            BankBranch agencia = construirAgencia(resultado);
-            Double distancia = ((Number) resultado[5]).doubleValue();
-
-            String distanciaFormatada = formatarDistancia(distancia);
-            String nomeAgencia = agencia.getName();
-            agencias.put(nomeAgencia, distanciaFormatada);
+            String nomeAgencia = (String) resultado[1];
+            double distancia = ((Number) resultado[5]).doubleValue();
+            agencias.add(nomeAgencia, distancia);
 
             if (agenciaMaisProxima == null || distancia < menorDistancia) {
                 agenciaMaisProxima = nomeAgencia;
@@ -141,27 +577,26 @@ public class BankBranchService {
                 agencias,
                 agencias.size(),
                 agenciaMaisProxima,
-                menorDistancia
+                agenciaMaisProxima == null ? null : menorDistancia
         );
     }
 
-    private DistanceBankBranchResponse processarResultadosAgenciasSimples(List<Object[]> resultados, Double posX, Double posY) {
-        Map<String, String> agencias = new LinkedHashMap<>();
-        String agenciaMaisProxima = null;
-        Double menorDistancia = null;
+    private DistanciaResponse processarMapaAgencias(BranchDistanceMap agencias, Double posX, Double posY) {
+        // Rows come ordered by distance, so the first one is the closest
+        boolean vazio = agencias.isEmpty();
+        return new DistanciaResponse(
+                new DistanciaResponse.PosicaoUsuario(posX, posY),
+                agencias,
+                agencias.size(),
+                vazio ? null : agencias.name(0),
+                vazio ? null : agencias.distance(0)
+        );
+    }
 
+    private DistanceBankBranchResponse processarResultadosAgenciasSimples(List<Object[]> resultados) {
+        BranchDistanceMap agencias = new BranchDistanceMap(resultados.size());
         for (Object[] resultado : resultados) {
-            BankBranch agencia = construirAgencia(resultado);
-            Double distancia = ((Number) resultado[5]).doubleValue();
-
-            String distanciaFormatada = formatarDistancia(distancia);
-            String nomeAgencia = agencia.getName();
-            agencias.put(nomeAgencia, distanciaFormatada);
-
-            if (agenciaMaisProxima == null || distancia < menorDistancia) {
-                agenciaMaisProxima = nomeAgencia;
-                menorDistancia = distancia;
-            }
+            agencias.add((String) resultado[1], ((Number) resultado[5]).doubleValue());
         }
 
         return new DistanceBankBranchResponse(
@@ -169,17 +604,82 @@ public class BankBranchService {
         );
     }
 
-    private BankBranch construirAgencia(Object[] resultado) {
-        return BankBranch.builder()
-                .id(((Number) resultado[0]).longValue())
-                .name((String) resultado[1])
-                .posX(((Number) resultado[2]).doubleValue())
-                .posY(((Number) resultado[3]).doubleValue())
-                .creationDate(((java.sql.Timestamp) resultado[4]).toLocalDateTime())
-                .build();
+    private String validarItemLote(RegisterBankBranchRequest request) {
+        if (request == null || request.posX() == null || request.posY() == null) {
+            return "Parameters posX and posY are mandatory";
+        }
+        if (request.posX() < -180.0 || request.posX() > 180.0) {
+            return "Position X must be between -180 and 180";
+        }
+        if (request.posY() < -90.0 || request.posY() > 90.0) {
+            return "Position Y must be between -90 and 90";
+        }
+        return null;
     }
 
-    private String formatarDistancia(Double distancia) {
-        return String.format("distancia = %.2f", distancia).replace(",", ".");
+    private Set<Long> celulasDoLote(List<RegisterBankBranchRequest> requests) {
+        Set<Long> celulas = new LinkedHashSet<>();
+        for (RegisterBankBranchRequest request : requests) {
+            if (validarItemLote(request) == null) {
+                celulas.addAll(vizinhanca(request.posX(), request.posY()));
+            }
+        }
+        return celulas;
+    }
+
+    private Map<Long, List<double[]>> carregarPosicoesExistentes(Set<Long> celulas) {
+        Map<Long, List<double[]>> posicoes = new HashMap<>();
+        List<Long> todas = new ArrayList<>(celulas);
+        for (int inicio = 0; inicio < todas.size(); inicio += CELULAS_POR_CONSULTA) {
+            List<Long> bloco = todas.subList(inicio, Math.min(inicio + CELULAS_POR_CONSULTA, todas.size()));
+            for (Object[] posicao : bankBranchRepository.findPositionsInCells(bloco)) {
+                double posX = ((Number) posicao[0]).doubleValue();
+                double posY = ((Number) posicao[1]).doubleValue();
+                posicoes.computeIfAbsent(GridCell.of(posX, posY), celula -> new ArrayList<>())
+                        .add(new double[]{posX, posY});
+            }
+        }
+        return posicoes;
+    }
+
+    private boolean existeProxima(Map<Long, List<double[]>> posicoesPorCelula, double posX, double posY) {
+        for (Long celula : vizinhanca(posX, posY)) {
+            for (double[] posicao : posicoesPorCelula.getOrDefault(celula, List.of())) {
+                if (BankBranchSpatialIndex.distance(posicao[0], posicao[1], posX, posY) <= DISTANCIA_MINIMA_ENTRE_AGENCIAS) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Long> vizinhanca(double posX, double posY) {
+        return GridCell.vizinhanca(
+                posX - DISTANCIA_MINIMA_ENTRE_AGENCIAS,
+                posY - DISTANCIA_MINIMA_ENTRE_AGENCIAS,
+                posX + DISTANCIA_MINIMA_ENTRE_AGENCIAS,
+                posY + DISTANCIA_MINIMA_ENTRE_AGENCIAS);
+    }
+
+    private boolean usarIndice() {
+        return indiceHabilitado && spatialIndex.isReady();
+    }
+
+    private DistanciaResponse processarResultadosIndice(BranchDistances resultados, Double posX, Double posY) {
+        return processarMapaAgencias(mapaDoIndice(resultados), posX, posY);
+    }
+
+    private DistanceBankBranchResponse processarResultadosIndiceSimples(BranchDistances resultados) {
+        return new DistanceBankBranchResponse(
+                mapaDoIndice(resultados)
+        );
+    }
+
+    private static BranchDistanceMap mapaDoIndice(BranchDistances resultados) {
+        BranchDistanceMap agencias = new BranchDistanceMap(resultados.size());
+        for (int i = 0; i < resultados.size(); i++) {
+            agencias.add(resultados.name(i), resultados.distance(i));
+        }
+        return agencias;
     }
 }
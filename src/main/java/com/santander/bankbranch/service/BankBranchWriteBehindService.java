@@ -0,0 +1,238 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.model.GridCell;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind registration, enabled with {@code bankbranch.cadastro.write-behind.enabled=true}.
+ *
+ * Requests wait in a bounded queue and a single writer thread flushes them in groups of up to
+ * {@code tamanho-grupo} items, or whatever arrived within {@code intervalo} of the first one,
+ * through registerBankBranches: one transaction and JDBC batching per group, with every item
+ * checked against the committed branches and the items before it in the same group. Groups are
+ * flushed one after the other, so each group sees the previous one committed.
+ *
+ * When the spatial index is ready, requests that already conflict with a committed branch are
+ * rejected before being queued.
+ *
+ * On shutdown no request is queued after the writer has been told to stop; the ones still queued
+ * when it does not finish within {@code espera-desligamento} fail with RejectedExecutionException.
+ * The same happens, with no more registrations taken, if an Error stops the writer.
+ */
+@Service
+@ConditionalOnProperty(name = "bankbranch.cadastro.write-behind.enabled", havingValue = "true")
+public class BankBranchWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BankBranchWriteBehindService.class);
+
+    private static final long ESPERA_OCIOSA_MS = 200;
+
+    private final BankBranchService bankBranchService;
+    private final BankBranchSpatialIndex spatialIndex;
+    private final BlockingQueue<Pendente> fila;
+    private final int tamanhoGrupo;
+    private final long intervaloNanos;
+    private final long esperaMaximaNanos;
+    private final Duration esperaDesligamento;
+    // Read side held by submit() from the ativo check until the request is queued, write side by stop()
+    private final ReadWriteLock desligamento = new ReentrantReadWriteLock();
+    private final DistributionSummary tamanhoDosGrupos;
+    private final Thread gravador;
+    private volatile boolean ativo = true;
+
+    public BankBranchWriteBehindService(BankBranchService bankBranchService,
+                                        BankBranchSpatialIndex spatialIndex,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${bankbranch.cadastro.write-behind.capacidade:10000}") int capacidade,
+                                        @Value("${bankbranch.cadastro.write-behind.tamanho-grupo:500}") int tamanhoGrupo,
+                                        @Value("${bankbranch.cadastro.write-behind.intervalo:20ms}") Duration intervalo,
+                                        @Value("${bankbranch.cadastro.write-behind.espera-maxima:100ms}") Duration esperaMaxima,
+                                        @Value("${bankbranch.cadastro.write-behind.espera-desligamento:30s}") Duration esperaDesligamento) {
+        if (capacidade < 1 || tamanhoGrupo < 1) {
+            throw new IllegalArgumentException("Write-behind capacity and group size must be at least 1");
+        }
+        this.bankBranchService = bankBranchService;
+        this.spatialIndex = spatialIndex;
+        this.fila = new ArrayBlockingQueue<>(capacidade);
+        this.tamanhoGrupo = tamanhoGrupo;
+        this.intervaloNanos = intervalo.toNanos();
+        this.esperaMaximaNanos = esperaMaxima.toNanos();
+        this.esperaDesligamento = esperaDesligamento;
+        this.tamanhoDosGrupos = DistributionSummary.builder("bankbranch.register.group.size")
+                .description("Registrations flushed per write-behind transaction")
+                .register(meterRegistry);
+        Gauge.builder("bankbranch.register.queue", fila, BlockingQueue::size)
+                .description("Registrations waiting for the write-behind writer")
+                .register(meterRegistry);
+        this.gravador = Thread.ofPlatform().name("bankbranch-write-behind").daemon().unstarted(this::gravar);
+    }
+
+    @PostConstruct
+    public void start() {
+        gravador.start();
+    }
+
+    /**
+     * Queues the registration. The future completes after the group holding it is committed,
+     * with the same response as a batch item (no id and an error message when rejected).
+     * Throws IllegalArgumentException for invalid requests and RejectedExecutionException when
+     * the queue stays full for longer than {@code espera-maxima}.
+     */
+    public CompletableFuture<RegisterBankBranchResponse> submit(RegisterBankBranchRequest request) {
+        if (request == null || request.posX() == null || request.posY() == null) {
+            throw new IllegalArgumentException("Parameters posX and posY are mandatory");
+        }
+        if (spatialIndex.isReady() && !spatialIndex.findNearest(request.posX(), request.posY(), 1,
+                GridCell.DISTANCIA_MINIMA_ENTRE_AGENCIAS).isEmpty()) {
+            throw new IllegalArgumentException(String.format(
+                    "There is already a branch close to this position. Minimum distance allowed: %.1f units",
+                    GridCell.DISTANCIA_MINIMA_ENTRE_AGENCIAS));
+        }
+
+        Pendente pendente = new Pendente(request, new CompletableFuture<>());
+        desligamento.readLock().lock();
+        try {
+            if (!ativo) {
+                throw new RejectedExecutionException("Write-behind registration is shutting down");
+            }
+            if (!fila.offer(pendente, esperaMaximaNanos, TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException("Registration queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the registration queue", e);
+        } finally {
+            desligamento.readLock().unlock();
+        }
+        return pendente.resultado();
+    }
+
+    public int queueSize() {
+        return fila.size();
+    }
+
+    /**
+     * Stops taking new registrations and waits up to {@code espera-desligamento} for the queued
+     * ones to be committed; those the writer has not taken by then are failed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Waits for submit() calls already past the ativo check, at most espera-maxima
+        desligamento.writeLock().lock();
+        try {
+            ativo = false;
+        } finally {
+            desligamento.writeLock().unlock();
+        }
+        gravador.join(esperaDesligamento.toMillis());
+
+        List<Pendente> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        if (!restantes.isEmpty()) {
+            logger.warn("Write-behind writer did not finish within {}, failing {} queued registrations",
+                    esperaDesligamento, restantes.size());
+            RejectedExecutionException erro = new RejectedExecutionException("Write-behind registration stopped");
+            restantes.forEach(pendente -> pendente.resultado().completeExceptionally(erro));
+        }
+    }
+
+    private void gravar() {
+        List<Pendente> grupo = new ArrayList<>(tamanhoGrupo);
+        try {
+            while (true) {
+                // Not interrupted by stop(), so a group is never cut off in the middle of its transaction
+                Pendente primeiro = fila.poll(ativo ? ESPERA_OCIOSA_MS : 0, TimeUnit.MILLISECONDS);
+                if (primeiro == null) {
+                    if (!ativo) {
+                        break;
+                    }
+                    continue;
+                }
+                grupo.add(primeiro);
+                long limite = System.nanoTime() + intervaloNanos;
+                while (grupo.size() < tamanhoGrupo) {
+                    fila.drainTo(grupo, tamanhoGrupo - grupo.size());
+                    long restante = limite - System.nanoTime();
+                    if (grupo.size() >= tamanhoGrupo || restante <= 0 || !ativo) {
+                        break;
+                    }
+                    Pendente proximo = fila.poll(restante, TimeUnit.NANOSECONDS);
+                    if (proximo != null) {
+                        grupo.add(proximo);
+                    }
+                }
+                confirmar(grupo);
+                grupo.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            RejectedExecutionException erro = new RejectedExecutionException("Write-behind writer interrupted");
+            grupo.forEach(pendente -> pendente.resultado().completeExceptionally(erro));
+        } finally {
+            // Also reached when an Error escapes confirmar(): nobody would drain the queue any more
+            encerrar();
+        }
+        logger.info("Write-behind registration writer stopped");
+    }
+
+    private void encerrar() {
+        desligamento.writeLock().lock();
+        try {
+            ativo = false;
+        } finally {
+            desligamento.writeLock().unlock();
+        }
+        List<Pendente> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        if (!restantes.isEmpty()) {
+            logger.error("Write-behind writer stopped with {} queued registrations, failing them", restantes.size());
+            RejectedExecutionException erro = new RejectedExecutionException("Write-behind writer stopped");
+            restantes.forEach(pendente -> pendente.resultado().completeExceptionally(erro));
+        }
+    }
+
+    private void confirmar(List<Pendente> grupo) {
+        List<RegisterBankBranchRequest> requests = new ArrayList<>(grupo.size());
+        grupo.forEach(pendente -> requests.add(pendente.request()));
+        try {
+            RegisterBankBranchBatchResponse response = bankBranchService.registerBankBranches(requests);
+            tamanhoDosGrupos.record(grupo.size());
+            for (int i = 0; i < grupo.size(); i++) {
+                grupo.get(i).resultado().complete(response.resultados().get(i));
+            }
+        } catch (Throwable e) {
+            logger.error("Error committing a group of {} registrations: {}", grupo.size(), e.getMessage(), e);
+            grupo.forEach(pendente -> pendente.resultado().completeExceptionally(e));
+            // The writer cannot be trusted after an Error; gravar() then stops taking registrations
+            if (e instanceof Error erro) {
+                throw erro;
+            }
+        }
+    }
+
+    private record Pendente(RegisterBankBranchRequest request, CompletableFuture<RegisterBankBranchResponse> resultado) {}
+}
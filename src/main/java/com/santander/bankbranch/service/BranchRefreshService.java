@@ -0,0 +1,175 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.event.BankBranchRegisteredEvent;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-node refresh, enabled with {@code bankbranch.replicacao.enabled=true} when several
+ * instances share the database.
+ *
+ * Every {@code intervalo}, the rows created after a high-water mark (the newest creation_date
+ * seen) are read in (creation_date, id) order through idx_creation_date, {@code tamanho-pagina}
+ * rows at a time. Rows the spatial index does not hold yet were registered on another node and
+ * are published as BankBranchRegisteredEvent, like local commits, so the index and
+ * DistanceQueryCache apply them one by one.
+ *
+ * creation_date is set before the row commits, so a row can become visible after newer ones.
+ * Each poll therefore starts {@code margem} before the mark, and rows read again are skipped.
+ * Removals made on other nodes are not seen.
+ *
+ * With {@code bankbranch.index.enabled=false} the index never loads, so the rows already seen
+ * within the margin (read by a poll or registered here) are tracked by id instead, starting from
+ * the newest creation_date in the table. The events still keep DistanceQueryCache current.
+ */
+@Service
+@ConditionalOnProperty(name = "bankbranch.replicacao.enabled", havingValue = "true")
+public class BranchRefreshService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BranchRefreshService.class);
+
+    private final BankBranchRepository bankBranchRepository;
+    private final BankBranchSpatialIndex spatialIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration margem;
+    private final int tamanhoPagina;
+    private final boolean indiceHabilitado;
+    private final Timer atraso;
+    private LocalDateTime marca;
+    // Without the index: id and creation_date of the rows seen since marca - margem
+    private final Map<Long, LocalDateTime> vistas = new ConcurrentHashMap<>();
+    // Rows committed elsewhere before this instant are in the index
+    private volatile long ultimaLeituraNanos = System.nanoTime();
+
+    public BranchRefreshService(BankBranchRepository bankBranchRepository,
+                                BankBranchSpatialIndex spatialIndex,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${bankbranch.replicacao.margem:1m}") Duration margem,
+                                @Value("${bankbranch.replicacao.tamanho-pagina:1000}") int tamanhoPagina,
+                                @Value("${bankbranch.index.enabled:true}") boolean indiceHabilitado) {
+        if (tamanhoPagina < 1) {
+            throw new IllegalArgumentException("The refresh page size must be at least 1");
+        }
+        this.bankBranchRepository = bankBranchRepository;
+        this.spatialIndex = spatialIndex;
+        this.eventPublisher = eventPublisher;
+        this.margem = margem;
+        this.tamanhoPagina = tamanhoPagina;
+        this.indiceHabilitado = indiceHabilitado;
+        this.atraso = Timer.builder("bankbranch.refresh.delay")
+                .description("Time from the creation of a branch on another node until this node applies it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        TimeGauge.builder("bankbranch.refresh.lag", this, TimeUnit.NANOSECONDS,
+                        servico -> System.nanoTime() - servico.ultimaLeituraNanos)
+                .description("Time since the last completed poll: branches registered elsewhere may be this stale")
+                .register(meterRegistry);
+    }
+
+    /** Applies the branches registered on other nodes since the last poll; returns how many. */
+    @Scheduled(fixedDelayString = "${bankbranch.replicacao.intervalo:5s}",
+               initialDelayString = "${bankbranch.replicacao.intervalo:5s}")
+    public int refresh() {
+        // The initial load reads every row; until then there is nothing to apply the delta to
+        if (indiceHabilitado && !spatialIndex.isReady()) {
+            return 0;
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            // Without the index, the first poll only records the rows already in the table
+            boolean linhaDeBase = false;
+            if (marca == null) {
+                LocalDateTime maisRecente = indiceHabilitado
+                        ? spatialIndex.newestCreationDate()
+                        : bankBranchRepository.findNewestCreationDate();
+                marca = maisRecente != null ? maisRecente : LocalDateTime.of(1970, 1, 1, 0, 0);
+                linhaDeBase = !indiceHabilitado;
+            }
+
+            LocalDateTime desde = marca.minus(margem);
+            long id = 0;
+            int aplicadas = 0;
+            List<Object[]> pagina;
+            do {
+                pagina = bankBranchRepository.findBranchPointsCreatedAfter(desde, id, tamanhoPagina);
+                for (Object[] linha : pagina) {
+                    id = ((Number) linha[0]).longValue();
+                    desde = ((Timestamp) linha[3]).toLocalDateTime();
+                    if (!jaVista(id, desde) && !linhaDeBase) {
+                        aplicar(id, ((Number) linha[1]).doubleValue(), ((Number) linha[2]).doubleValue(), desde);
+                        aplicadas++;
+                    }
+                }
+            } while (pagina.size() == tamanhoPagina);
+
+            if (desde.isAfter(marca)) {
+                marca = desde;
+            }
+            LocalDateTime proximaLeitura = marca.minus(margem);
+            vistas.values().removeIf(criacao -> criacao.isBefore(proximaLeitura));
+            ultimaLeituraNanos = inicio;
+            if (aplicadas > 0) {
+                logger.info("Applied {} branches registered on other nodes in {} ms",
+                        aplicadas, (System.nanoTime() - inicio) / 1_000_000);
+            }
+            return aplicadas;
+        } catch (RuntimeException e) {
+            logger.error("Error refreshing branches registered on other nodes: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    // Registrations committed on this node are not applied again when a poll reads them
+    @EventListener
+    public void onBankBranchRegistered(BankBranchRegisteredEvent event) {
+        if (!indiceHabilitado) {
+            BankBranch agencia = event.bankBranch();
+            vistas.putIfAbsent(agencia.getId(),
+                    agencia.getCreationDate() != null ? agencia.getCreationDate() : LocalDateTime.now());
+        }
+    }
+
+    /** Whether the row was applied before; without the index, also records it as seen. */
+    private boolean jaVista(long id, LocalDateTime criacao) {
+        if (indiceHabilitado) {
+            return spatialIndex.contains(id);
+        }
+        return vistas.putIfAbsent(id, criacao) != null;
+    }
+
+    private void aplicar(long id, double posX, double posY, LocalDateTime creationDate) {
+        BankBranch agencia = BankBranch.builder()
+                .id(id)
+                .name(BankBranch.nomeDaAgencia(id))
+                .posX(posX)
+                .posY(posY)
+                .creationDate(creationDate)
+                .gridCell(GridCell.of(posX, posY))
+                .build();
+        eventPublisher.publishEvent(new BankBranchRegisteredEvent(agencia));
+        atraso.record(Duration.between(creationDate, LocalDateTime.now()));
+    }
+}
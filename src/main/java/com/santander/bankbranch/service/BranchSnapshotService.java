@@ -0,0 +1,187 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchSnapshotFile;
+import com.santander.bankbranch.index.ColumnarBranchStore;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Periodic binary snapshot of the spatial index (see BranchSnapshotFile), used to warm start.
+ *
+ * The snapshot is read while the context starts, before the web server accepts requests. When
+ * the bankbranch table is empty (jdbc:h2:mem with create-drop), its rows are inserted back with
+ * JDBC batches and bankbranch_seq is moved past the highest id. Otherwise it is only used when the
+ * table still holds exactly its branches up to its highest id (same count and same highest id);
+ * any other database, e.g. one restored or cleaned since, would leave phantom branches in the
+ * index, so the snapshot is discarded. BankBranchService then loads the index from the snapshot
+ * and replays, through idx_creation_date, the rows created after it.
+ */
+@Service
+@ConditionalOnProperty(name = "bankbranch.snapshot.enabled", havingValue = "true")
+public class BranchSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BranchSnapshotService.class);
+
+    private static final int LINHAS_POR_LOTE = 10_000;
+    // allocationSize of bankbranch_seq
+    private static final int BLOCO_SEQUENCIA = 50;
+
+    // Also makes sure the schema exists before restore() runs
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    @Autowired
+    private BankBranchSpatialIndex spatialIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${bankbranch.snapshot.arquivo:data/branches.snapshot}")
+    private Path arquivo;
+
+    @Value("${bankbranch.snapshot.margem-replay:1m}")
+    private Duration margemReplay;
+
+    private volatile BranchSnapshotFile.Snapshot restaurado;
+    private volatile int tamanhoGravado = -1;
+    private volatile long remocoesGravadas;
+
+    @PostConstruct
+    public void restore() {
+        if (!Files.exists(arquivo)) {
+            logger.info("No branch snapshot at {}, the spatial index will load from the database", arquivo);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            BranchSnapshotFile.Snapshot snapshot = BranchSnapshotFile.read(arquivo);
+            int inseridas = 0;
+            if (bankBranchRepository.count() == 0) {
+                inseridas = restaurarBanco(snapshot.branches());
+            } else if (!confereComBanco(snapshot.branches())) {
+                logger.warn("Discarding branch snapshot {}: the database does not hold the same branches, "
+                        + "the spatial index will load from the database", arquivo);
+                return;
+            }
+            restaurado = snapshot;
+            tamanhoGravado = snapshot.branches().size();
+            logger.info("Branch snapshot {} read in {} ms: {} branches, {} inserted back into the database",
+                    arquivo, (System.nanoTime() - inicio) / 1_000_000, snapshot.branches().size(), inseridas);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring branch snapshot {}, the spatial index will load from the database: {}",
+                    arquivo, e.getMessage());
+        }
+    }
+
+    /** The snapshot read at startup, handed out once; null when there was no valid snapshot. */
+    public BranchSnapshotFile.Snapshot takeRestored() {
+        BranchSnapshotFile.Snapshot snapshot = restaurado;
+        restaurado = null;
+        return snapshot;
+    }
+
+    /**
+     * Rows created from this point on may be missing from the snapshot. The margin covers
+     * registrations whose creation_date was set before a snapshot but that committed after it.
+     */
+    public LocalDateTime replayFrom(BranchSnapshotFile.Snapshot snapshot) {
+        if (snapshot.branches().size() == 0) {
+            return LocalDateTime.of(1970, 1, 1, 0, 0);
+        }
+        return ColumnarBranchStore.fromEpochNanos(snapshot.newestCreationEpochNanos()).minus(margemReplay);
+    }
+
+    @Scheduled(fixedDelayString = "${bankbranch.snapshot.intervalo:5m}",
+               initialDelayString = "${bankbranch.snapshot.intervalo:5m}")
+    public void writeSnapshot() {
+        if (!spatialIndex.isReady()) {
+            return;
+        }
+
+        long remocoes = spatialIndex.removals();
+        ColumnarBranchStore agencias = spatialIndex.snapshot();
+        // Without removals in between, an unchanged size means no branch was added either
+        if (agencias.size() == tamanhoGravado && remocoes == remocoesGravadas) {
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            BranchSnapshotFile.write(arquivo, agencias);
+            tamanhoGravado = agencias.size();
+            remocoesGravadas = remocoes;
+            logger.info("Branch snapshot {} written in {} ms with {} branches",
+                    arquivo, (System.nanoTime() - inicio) / 1_000_000, agencias.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error writing branch snapshot {}: {}", arquivo, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        writeSnapshot();
+    }
+
+    private boolean confereComBanco(ColumnarBranchStore agencias) {
+        long maiorId = 0;
+        for (int i = 0; i < agencias.size(); i++) {
+            maiorId = Math.max(maiorId, agencias.id(i));
+        }
+        long maiorIdDoSnapshot = maiorId;
+        // Rows above the highest id came after the snapshot and are replayed by creation_date
+        return Boolean.TRUE.equals(jdbcTemplate.query(
+                "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM bankbranch WHERE id <= ?",
+                rs -> rs.next() && rs.getLong(1) == agencias.size() && rs.getLong(2) == maiorIdDoSnapshot,
+                maiorIdDoSnapshot));
+    }
+
+    private int restaurarBanco(ColumnarBranchStore agencias) {
+        if (agencias.size() == 0) {
+            return 0;
+        }
+
+        long maiorId = 0;
+        List<Object[]> lote = new ArrayList<>(Math.min(agencias.size(), LINHAS_POR_LOTE));
+        for (int i = 0; i < agencias.size(); i++) {
+            long id = agencias.id(i);
+            double posX = agencias.posX(i);
+            double posY = agencias.posY(i);
+            lote.add(new Object[]{id, BankBranch.nomeDaAgencia(id), posX, posY,
+                    Timestamp.valueOf(agencias.creationDate(i)), GridCell.of(posX, posY)});
+            maiorId = Math.max(maiorId, id);
+
+            if (lote.size() == LINHAS_POR_LOTE || i == agencias.size() - 1) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO bankbranch (id, name, pos_x, pos_y, creation_date, grid_cell) VALUES (?, ?, ?, ?, ?, ?)",
+                        lote);
+                lote.clear();
+            }
+        }
+
+        // The pooled optimizer hands out the block that ends at the value it reads
+        jdbcTemplate.execute("ALTER SEQUENCE bankbranch_seq RESTART WITH " + (maiorId + BLOCO_SEQUENCIA + 1));
+        return agencias.size();
+    }
+}
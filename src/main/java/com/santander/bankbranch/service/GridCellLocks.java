@@ -0,0 +1,130 @@
+package com.santander.bankbranch.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks over GridCell keys guarding the minimum distance between branches.
+ *
+ * A registration locks every cell of the box around its position (the 3x3 neighbourhood).
+ * Two positions within the minimum distance of each other always share a cell of their boxes,
+ * so they serialise, while registrations far apart take different stripes and run in parallel.
+ * Stripes are always taken in ascending order, so two registrations never wait on each other
+ * in a cycle.
+ *
+ * The locks only exist in this JVM: they do not protect the invariant across several instances
+ * writing to the same database.
+ */
+@Component
+public class GridCellLocks {
+
+    private final ReentrantLock[] faixas;
+    private final int mascara;
+
+    public GridCellLocks(@Value("${bankbranch.cadastro.lock-stripes:1024}") int quantidade) {
+        if (quantidade < 1 || Integer.bitCount(quantidade) != 1) {
+            throw new IllegalArgumentException("The number of lock stripes must be a power of two");
+        }
+        this.faixas = new ReentrantLock[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            faixas[i] = new ReentrantLock();
+        }
+        this.mascara = quantidade - 1;
+    }
+
+    /**
+     * Locks the stripes of the given cells. Inside a transaction they stay locked until it
+     * commits or rolls back, so the next registration in these cells sees this one, and close()
+     * does nothing; otherwise close() releases them.
+     */
+    public Bloqueio lockForTransaction(Collection<Long> celulas) {
+        Bloqueio bloqueio = lock(celulas);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return bloqueio;
+        }
+        try {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bloqueio.liberar();
+                }
+            });
+        } catch (RuntimeException e) {
+            bloqueio.liberar();
+            throw e;
+        }
+        return new Bloqueio(new int[0]);
+    }
+
+    public int stripes() {
+        return faixas.length;
+    }
+
+    int stripeOf(long celula) {
+        // Spread neighbouring cells, whose keys differ only in the low bits of x or y
+        long misturado = celula * 0x9E3779B97F4A7C15L;
+        return (int) (misturado >>> 40) & mascara;
+    }
+
+    Bloqueio lock(Collection<Long> celulas) {
+        int[] indices = new int[celulas.size()];
+        int tamanho = 0;
+        for (Long celula : celulas) {
+            indices[tamanho++] = stripeOf(celula);
+        }
+        Arrays.sort(indices, 0, tamanho);
+
+        int distintos = 0;
+        for (int i = 0; i < tamanho; i++) {
+            if (distintos == 0 || indices[distintos - 1] != indices[i]) {
+                indices[distintos++] = indices[i];
+            }
+        }
+        int[] travadas = Arrays.copyOf(indices, distintos);
+
+        int adquiridas = 0;
+        try {
+            for (int indice : travadas) {
+                faixas[indice].lock();
+                adquiridas++;
+            }
+        } catch (RuntimeException | Error e) {
+            for (int i = adquiridas - 1; i >= 0; i--) {
+                faixas[travadas[i]].unlock();
+            }
+            throw e;
+        }
+        return new Bloqueio(travadas);
+    }
+
+    public final class Bloqueio implements AutoCloseable {
+
+        private final int[] travadas;
+        private boolean liberado;
+
+        private Bloqueio(int[] travadas) {
+            this.travadas = travadas;
+        }
+
+        @Override
+        public void close() {
+            liberar();
+        }
+
+        private void liberar() {
+            if (liberado) {
+                return;
+            }
+            liberado = true;
+            for (int i = travadas.length - 1; i >= 0; i--) {
+                faixas[travadas[i]].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.santander.bankbranch;
+
+import com.santander.bankbranch.config.TestSecurityConfig;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.service.BankBranchService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mixed read/write HTTP load against /desafio/cadastrar and /desafio/distancia on a random port,
+ * with TestSecurityConfig in place of the GitHub token check.
+ *
+ * The shape of the run comes from system properties: load.agencias (branches registered before
+ * the run), load.clientes (concurrent clients), load.requisicoes (measured requests),
+ * load.aquecimento (warm-up requests) and load.escritas (percentage of registrations). Results
+ * go to target/load-tests/desafio.txt. Run with {@code mvn test -Pload -Dtest=DesafioLoadTest}.
+ */
+@Tag("load")
+// TestSecurityConfig comes after the application so its beans replace SecurityConfig's
+@SpringBootTest(classes = {BankBranchApiApplication.class, TestSecurityConfig.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.main.allow-bean-definition-overriding=true",
+                "spring.datasource.url=jdbc:h2:mem:load_desafio;DB_CLOSE_DELAY=-1",
+                "logging.level.org.springframework.security=WARN",
+                "logging.level.org.springdoc=WARN"
+        })
+@ActiveProfiles("test")
+@DisplayName("/desafio HTTP load test")
+class DesafioLoadTest {
+
+    private static final int AGENCIAS = Integer.getInteger("load.agencias", 10_000);
+    private static final int CLIENTES = Integer.getInteger("load.clientes", 32);
+    private static final int REQUISICOES = Integer.getInteger("load.requisicoes", 5_000);
+    private static final int AQUECIMENTO = Integer.getInteger("load.aquecimento", 1_000);
+    private static final int ESCRITAS = Integer.getInteger("load.escritas", 10);
+
+    // Branches sit on a 0.5 grid; registrations go to the centres of its squares, 0.35 from any branch
+    private static final double PASSO = 0.5;
+    private static final int COLUNAS = 700;
+    private static final int LINHAS = 350;
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private BankBranchService bankBranchService;
+
+    private final AtomicInteger proximaEscrita = new AtomicInteger();
+
+    enum Operacao { CADASTRAR, DISTANCIA_K, DISTANCIA_RAIO }
+
+    @Test
+    @DisplayName("Should report throughput and latency percentiles of a mixed workload")
+    void deveMedirCargaMista() throws Exception {
+        assertTrue(AGENCIAS <= COLUNAS * LINHAS && AQUECIMENTO + REQUISICOES <= COLUNAS * LINHAS,
+                "Dataset or request count larger than the position grid");
+        cadastrarAgencias();
+
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        executar(cliente, AQUECIMENTO);
+
+        long inicio = System.nanoTime();
+        LoadTestRecorder execucao = executar(cliente, REQUISICOES);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        StringBuilder relatorio = new StringBuilder(String.format(Locale.ROOT,
+                "%d requests (%d%% registrations), %d concurrent clients, %d branches, %d processor(s)%n"
+                        + "total: %.2f s, %.0f req/s, %s%n",
+                REQUISICOES, ESCRITAS, CLIENTES, AGENCIAS, Runtime.getRuntime().availableProcessors(),
+                segundos, REQUISICOES / segundos, execucao.summary(null)));
+        for (Operacao operacao : Operacao.values()) {
+            relatorio.append(String.format(Locale.ROOT, "%-15s %s%n", operacao, execucao.summary(operacao.name())));
+        }
+        if (!execucao.failures().isEmpty()) {
+            relatorio.append("failures: ").append(execucao.failures()).append(System.lineSeparator());
+        }
+        Path arquivo = LoadTestRecorder.writeReport("desafio.txt", relatorio.toString());
+
+        assertEquals(0, execucao.errors(), "Requests failed, see " + arquivo + ": " + execucao.failures());
+    }
+
+    private LoadTestRecorder executar(HttpClient cliente, int total) throws Exception {
+        LoadTestRecorder execucao = new LoadTestRecorder(total);
+        AtomicInteger proxima = new AtomicInteger();
+
+        try (ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES)) {
+            for (int c = 0; c < CLIENTES; c++) {
+                clientes.submit(() -> {
+                    for (int i = proxima.getAndIncrement(); i < total; i = proxima.getAndIncrement()) {
+                        Operacao operacao = operacao(i);
+                        HttpRequest request = requisicao(operacao, i);
+                        long inicio = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = cliente.send(request, HttpResponse.BodyHandlers.discarding());
+                            int esperado = operacao == Operacao.CADASTRAR ? 201 : 200;
+                            if (response.statusCode() != esperado) {
+                                execucao.fail(operacao + " " + response.statusCode());
+                            }
+                        } catch (IOException e) {
+                            execucao.fail(operacao + " " + e.getClass().getSimpleName());
+                        }
+                        execucao.record(i, operacao.name(), System.nanoTime() - inicio);
+                    }
+                    return null;
+                });
+            }
+        }
+        return execucao;
+    }
+
+    private static Operacao operacao(int i) {
+        // Spread registrations evenly instead of sending them in bursts
+        if ((i * 37) % 100 < ESCRITAS) {
+            return Operacao.CADASTRAR;
+        }
+        return i % 4 == 0 ? Operacao.DISTANCIA_RAIO : Operacao.DISTANCIA_K;
+    }
+
+    private HttpRequest requisicao(Operacao operacao, int i) {
+        double posX = -175.0 + (i % COLUNAS) * PASSO;
+        double posY = -87.5 + ((i / COLUNAS) % LINHAS) * PASSO;
+        return switch (operacao) {
+            case CADASTRAR -> {
+                int escrita = proximaEscrita.getAndIncrement();
+                String corpo = String.format(Locale.ROOT, "{\"posX\": %.2f, \"posY\": %.2f}",
+                        -175.0 + (escrita % COLUNAS) * PASSO + PASSO / 2,
+                        -87.5 + (escrita / COLUNAS) * PASSO + PASSO / 2);
+                yield HttpRequest.newBuilder(uri("/desafio/cadastrar"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                        .build();
+            }
+            case DISTANCIA_K -> HttpRequest.newBuilder(uri(String.format(Locale.ROOT,
+                    "/desafio/distancia?posX=%.3f&posY=%.3f&k=10", posX + 0.1, posY + 0.1))).GET().build();
+            case DISTANCIA_RAIO -> HttpRequest.newBuilder(uri(String.format(Locale.ROOT,
+                    "/desafio/distancia?posX=%.3f&posY=%.3f&raio=2", posX + 0.1, posY + 0.1))).GET().build();
+        };
+    }
+
+    private URI uri(String caminho) {
+        return URI.create("http://localhost:" + porta + caminho);
+    }
+
+    private void cadastrarAgencias() {
+        List<RegisterBankBranchRequest> lote = new ArrayList<>();
+        for (int i = 0; i < AGENCIAS; i++) {
+            lote.add(new RegisterBankBranchRequest(-175.0 + (i % COLUNAS) * PASSO, -87.5 + (i / COLUNAS) * PASSO));
+            if (lote.size() == 5_000 || i == AGENCIAS - 1) {
+                bankBranchService.registerBankBranches(lote);
+                lote = new ArrayList<>();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.santander.bankbranch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latencies and failures of one run of a load test, one slot per request so clients record
+ * without contention, and the report written to target/load-tests. Shared by the @Tag("load")
+ * tests.
+ */
+final class LoadTestRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRecorder.class);
+
+    private static final Path DIRETORIO = Path.of("target", "load-tests");
+
+    private final long[] latenciasNanos;
+    private final String[] grupos;
+    private final AtomicInteger erros = new AtomicInteger();
+    private final Map<String, AtomicInteger> falhas = new ConcurrentSkipListMap<>();
+
+    LoadTestRecorder(int requisicoes) {
+        this.latenciasNanos = new long[requisicoes];
+        this.grupos = new String[requisicoes];
+    }
+
+    /** Latency of request {@code i}, in {@code grupo} (e.g. the operation) or in none when null. */
+    void record(int i, String grupo, long nanos) {
+        latenciasNanos[i] = nanos;
+        grupos[i] = grupo;
+    }
+
+    int size() {
+        return latenciasNanos.length;
+    }
+
+    void fail(String motivo) {
+        erros.incrementAndGet();
+        falhas.computeIfAbsent(motivo, chave -> new AtomicInteger()).incrementAndGet();
+    }
+
+    int errors() {
+        return erros.get();
+    }
+
+    Map<String, AtomicInteger> failures() {
+        return falhas;
+    }
+
+    /** Request count and latency percentiles of one group, or of every request (and the errors) when null. */
+    String summary(String grupo) {
+        long[] latencias = new long[latenciasNanos.length];
+        int tamanho = 0;
+        for (int i = 0; i < latenciasNanos.length; i++) {
+            if (grupo == null || grupo.equals(grupos[i])) {
+                latencias[tamanho++] = latenciasNanos[i];
+            }
+        }
+        latencias = Arrays.copyOf(latencias, tamanho);
+        Arrays.sort(latencias);
+        return String.format(Locale.ROOT, "%d requests, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms%s",
+                tamanho, percentil(latencias, 0.50), percentil(latencias, 0.95), percentil(latencias, 0.99),
+                grupo == null ? String.format(Locale.ROOT, ", %d error(s)", erros.get()) : "");
+    }
+
+    /** Writes the report to target/load-tests/{arquivo} and logs it at INFO; returns the path written. */
+    static Path writeReport(String arquivo, String relatorio) throws IOException {
+        Path caminho = DIRETORIO.resolve(arquivo);
+        Files.createDirectories(DIRETORIO);
+        Files.writeString(caminho, relatorio);
+        logger.info("Load test report written to {}:{}{}", caminho, System.lineSeparator(), relatorio);
+        return caminho;
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) {
+            return Double.NaN;
+        }
+        int indice = (int) Math.ceil(p * ordenadas.length) - 1;
+        return ordenadas[Math.max(indice, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,123 @@
+package com.santander.bankbranch;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import com.santander.bankbranch.service.BankBranchService;
+import com.santander.bankbranch.service.GridCellLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput of single registrations (POST /desafio/cadastrar without the HTTP layer) with 1, 2,
+ * 4 and 8 threads registering far-apart positions, so they never wait on the same grid cells.
+ * Results go to target/load-tests/registration.txt. Run with
+ * {@code mvn test -Pload -Dtest=RegistrationThroughputLoadTest}.
+ */
+@Tag("load")
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({BankBranchService.class, BankBranchSpatialIndex.class, DistanceQueryCache.class, SimpleMeterRegistry.class,
+        GridCellLocks.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Registration throughput load test")
+class RegistrationThroughputLoadTest {
+
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int CADASTROS = Integer.getInteger("load.cadastros", 2_000);
+    private static final int AQUECIMENTO = 2_000;
+
+    @Autowired
+    private BankBranchService bankBranchService;
+
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    private final AtomicInteger proximaPosicao = new AtomicInteger();
+
+    @Test
+    @DisplayName("Should report registration throughput per thread count")
+    void deveMedirVazaoDeCadastroPorThreads() throws Exception {
+        bankBranchRepository.deleteAll();
+        // Warm-up on one thread and on the most threads, so the 1-thread run is not the one paying for the JIT
+        cadastrar(1, new LoadTestRecorder(AQUECIMENTO));
+        cadastrar(THREADS[THREADS.length - 1], new LoadTestRecorder(AQUECIMENTO));
+
+        StringBuilder relatorio = new StringBuilder(String.format(Locale.ROOT,
+                "%d registrations per run, %d processor(s)%n", CADASTROS, Runtime.getRuntime().availableProcessors()));
+        double vazaoComUmaThread = 0;
+        double vazaoComMaisThreads = 0;
+        for (int threads : THREADS) {
+            LoadTestRecorder execucao = new LoadTestRecorder(CADASTROS);
+            long inicio = System.nanoTime();
+            cadastrar(threads, execucao);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            double vazao = CADASTROS / segundos;
+            if (threads == 1) {
+                vazaoComUmaThread = vazao;
+            }
+            vazaoComMaisThreads = vazao;
+            relatorio.append(String.format(Locale.ROOT, "%d thread(s): %.2f s, %.0f registrations/s (%.2fx), %s%n",
+                    threads, segundos, vazao, vazao / vazaoComUmaThread, execucao.summary(null)));
+            assertEquals(0, execucao.errors(), "Registrations failed: " + execucao.failures());
+        }
+        LoadTestRecorder.writeReport("registration.txt", relatorio.toString());
+
+        // Loose on purpose: with few processors threads cannot add throughput, they must just not take it away
+        assertTrue(vazaoComMaisThreads >= 0.7 * vazaoComUmaThread, relatorio.toString());
+    }
+
+    private void cadastrar(int threads, LoadTestRecorder execucao) throws Exception {
+        int total = execucao.size();
+        AtomicInteger proxima = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futuros.add(executor.submit(() -> {
+                    for (int i = proxima.getAndIncrement(); i < total; i = proxima.getAndIncrement()) {
+                        long inicio = System.nanoTime();
+                        try {
+                            bankBranchService.registerBankBranch(proximaRequisicao());
+                        } catch (RuntimeException e) {
+                            execucao.fail(e.getClass().getSimpleName());
+                        }
+                        execucao.record(i, null, System.nanoTime() - inicio);
+                    }
+                }));
+            }
+            for (Future<?> futuro : futuros) {
+                futuro.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RegisterBankBranchRequest proximaRequisicao() {
+        // Half a unit apart on a 300-wide grid, well above the minimum distance
+        int posicao = proximaPosicao.getAndIncrement();
+        return new RegisterBankBranchRequest(-75.0 + (posicao % 300) * 0.5, -45.0 + (posicao / 300) * 0.5);
+    }
+}
@@ -0,0 +1,168 @@
+package com.santander.bankbranch;
+
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.service.BankBranchService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same load against the application on platform threads and on virtual threads.
+ *
+ * Every request carries a new bearer token, so each one blocks on a stubbed GitHub call with
+ * {@link #LATENCIA_GITHUB_MS} of latency before searching {@link #AGENCIAS} branches. Results
+ * go to target/load-tests/virtual-threads.txt. Run with {@code mvn test -Pload}.
+ */
+@Tag("load")
+@DisplayName("Virtual threads load comparison")
+class VirtualThreadsLoadTest {
+
+    private static final int AGENCIAS = 1_000;
+    private static final int CLIENTES = 400;
+    private static final int REQUISICOES = 2_000;
+    private static final int AQUECIMENTO = 400;
+    private static final long LATENCIA_GITHUB_MS = 200;
+
+    private HttpServer github;
+    private final AtomicInteger proximoToken = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        github = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        github.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        github.createContext("/user", exchange -> {
+            try {
+                Thread.sleep(LATENCIA_GITHUB_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] corpo = "{\"login\":\"octocat\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, corpo.length);
+            try (OutputStream saida = exchange.getResponseBody()) {
+                saida.write(corpo);
+            }
+        });
+        github.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        github.stop(0);
+    }
+
+    @Test
+    @DisplayName("Should compare throughput and latency of platform and virtual threads")
+    void deveCompararThreadsDePlataformaEVirtuais() throws Exception {
+        Resultado plataforma = medir(false);
+        Resultado virtuais = medir(true);
+
+        String relatorio = String.format(Locale.ROOT,
+                "%d requests, %d concurrent clients, %d branches, %d ms GitHub latency, %d processor(s)%n%s%n%s%n",
+                REQUISICOES, CLIENTES, AGENCIAS, LATENCIA_GITHUB_MS, Runtime.getRuntime().availableProcessors(),
+                plataforma, virtuais);
+        LoadTestRecorder.writeReport("virtual-threads.txt", relatorio);
+
+        assertEquals(0, plataforma.execucao().errors());
+        assertEquals(0, virtuais.execucao().errors());
+    }
+
+    private Resultado medir(boolean threadsVirtuais) throws Exception {
+        String modo = threadsVirtuais ? "virtual" : "platform";
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BankBranchApiApplication.class)
+                .profiles("test")
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + threadsVirtuais,
+                        "--spring.datasource.url=jdbc:h2:mem:load_" + modo,
+                        "--spring.security.oauth2.resourceserver.opaque-token.introspection-uri=http://localhost:"
+                                + github.getAddress().getPort() + "/user",
+                        "--bankbranch.security.introspection.read-timeout=10s",
+                        "--logging.level.org.springframework.security=WARN",
+                        "--logging.level.org.springframework.security.oauth2=WARN",
+                        "--logging.level.org.springdoc=WARN")) {
+            cadastrarAgencias(contexto.getBean(BankBranchService.class));
+            int porta = contexto.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            HttpClient cliente = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            executar(cliente, porta, AQUECIMENTO);
+
+            long inicio = System.nanoTime();
+            LoadTestRecorder execucao = executar(cliente, porta, REQUISICOES);
+            return new Resultado(modo, (System.nanoTime() - inicio) / 1e9, execucao);
+        }
+    }
+
+    private LoadTestRecorder executar(HttpClient cliente, int porta, int total) throws Exception {
+        LoadTestRecorder execucao = new LoadTestRecorder(total);
+        AtomicInteger proxima = new AtomicInteger();
+
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTES; c++) {
+                clientes.submit(() -> {
+                    for (int i = proxima.getAndIncrement(); i < total; i = proxima.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(String.format(Locale.ROOT,
+                                        "http://localhost:%d/desafio/distancia?posX=%.2f&posY=%.2f&k=10",
+                                        porta, -75.0 + (i % 300) * 0.5, -45.0 + (i % 40) * 0.5)))
+                                .header("Authorization", "Bearer gho_load_" + proximoToken.incrementAndGet())
+                                .GET()
+                                .build();
+                        long inicio = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = cliente.send(request, HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() != 200) {
+                                execucao.fail(Integer.toString(response.statusCode()));
+                            }
+                        } catch (IOException e) {
+                            execucao.fail(e.getClass().getSimpleName());
+                        }
+                        execucao.record(i, null, System.nanoTime() - inicio);
+                    }
+                    return null;
+                });
+            }
+        }
+        return execucao;
+    }
+
+    private static void cadastrarAgencias(BankBranchService bankBranchService) {
+        List<RegisterBankBranchRequest> lote = new ArrayList<>();
+        for (int i = 0; i < AGENCIAS; i++) {
+            lote.add(new RegisterBankBranchRequest(-75.0 + (i % 300) * 0.5, -45.0 + (i / 300) * 0.5));
+        }
+        bankBranchService.registerBankBranches(lote);
+    }
+
+    private record Resultado(String modo, double segundos, LoadTestRecorder execucao) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-8s threads: %.2f s, %.0f req/s, %s",
+                    modo, segundos, REQUISICOES / segundos, execucao.summary(null));
+        }
+    }
+}
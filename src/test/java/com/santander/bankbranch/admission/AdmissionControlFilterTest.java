@@ -0,0 +1,87 @@
+package com.santander.bankbranch.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AdmissionControlFilter tests")
+class AdmissionControlFilterTest {
+
+    private ConcurrencyLimiter cadastrar;
+    private ConcurrencyLimiter distancia;
+    private AdmissionControlFilter filtro;
+
+    @BeforeEach
+    void setUp() {
+        cadastrar = new ConcurrencyLimiter("cadastrar", "fixed", 1, 1, 1, Duration.ofMillis(100));
+        distancia = new ConcurrencyLimiter("distancia", "fixed", 1, 1, 1, Duration.ofMillis(100));
+        filtro = new AdmissionControlFilter(List.of(cadastrar, distancia), HttpStatus.SERVICE_UNAVAILABLE,
+                Duration.ofMillis(1500), new ObjectMapper().registerModule(new JavaTimeModule()));
+    }
+
+    @Test
+    @DisplayName("Should answer 503 with Retry-After while the endpoint is at its limit")
+    void deveRejeitarQuandoSaturado() throws Exception {
+        AtomicReference<MockHttpServletResponse> rejeitada = new AtomicReference<>();
+        AtomicReference<MockHttpServletResponse> outroGrupo = new AtomicReference<>();
+
+        MockHttpServletResponse aceita = new MockHttpServletResponse();
+        filtro.doFilter(requisicao("/desafio/distancia/v2"), aceita, (request, response) -> {
+            try {
+                rejeitada.set(executar("/desafio/distancia"));
+                outroGrupo.set(executar("/desafio/cadastrar/lote"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(200, aceita.getStatus());
+        assertEquals(503, rejeitada.get().getStatus());
+        assertEquals("2", rejeitada.get().getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(rejeitada.get().getContentAsString().contains("/desafio/distancia"));
+        assertEquals(200, outroGrupo.get().getStatus());
+        assertEquals(0, distancia.inFlight());
+        assertEquals(1, distancia.rejected());
+        // Paths outside the groups are not limited
+        assertFalse(filtro.shouldNotFilter(requisicao("/desafio/cadastrar")));
+        assertTrue(filtro.shouldNotFilter(requisicao("/desafio/cadastrarx")));
+        assertTrue(filtro.shouldNotFilter(requisicao("/actuator/health")));
+    }
+
+    @Test
+    @DisplayName("Should keep the slot of an async request until it completes")
+    void deveLiberarRequisicaoAssincronaAoConcluir() throws Exception {
+        MockHttpServletRequest assincrona = requisicao("/desafio/cadastrar/async");
+        assincrona.setAsyncSupported(true);
+        filtro.doFilter(assincrona, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        assertEquals(1, cadastrar.inFlight());
+        assertEquals(503, executar("/desafio/cadastrar").getStatus());
+
+        assincrona.getAsyncContext().complete();
+        assertEquals(0, cadastrar.inFlight());
+        assertEquals(200, executar("/desafio/cadastrar").getStatus());
+    }
+
+    private MockHttpServletResponse executar(String caminho) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(requisicao(caminho), response, (request, resposta) -> { });
+        return response;
+    }
+
+    private static MockHttpServletRequest requisicao(String caminho) {
+        return new MockHttpServletRequest("GET", caminho);
+    }
+}
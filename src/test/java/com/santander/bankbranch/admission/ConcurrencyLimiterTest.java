@@ -0,0 +1,108 @@
+package com.santander.bankbranch.admission;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConcurrencyLimiter tests")
+class ConcurrencyLimiterTest {
+
+    private static final long RAPIDA = Duration.ofMillis(10).toNanos();
+    private static final long LENTA = Duration.ofMillis(500).toNanos();
+
+    @Test
+    @DisplayName("Should turn requests away over a fixed limit and never move it")
+    void deveRejeitarAcimaDoLimiteFixo() {
+        ConcurrencyLimiter limitador = new ConcurrencyLimiter("distancia", "fixed", 2, 1, 10, Duration.ofMillis(100));
+
+        assertTrue(limitador.tryAcquire());
+        assertTrue(limitador.tryAcquire());
+        assertFalse(limitador.tryAcquire());
+        limitador.release(LENTA, true);
+        assertTrue(limitador.tryAcquire());
+
+        assertEquals(2, limitador.limit());
+        assertEquals(2, limitador.inFlight());
+        LimiterState estado = limitador.state();
+        assertEquals("fixed", estado.mode());
+        assertEquals(3, estado.accepted());
+        assertEquals(1, estado.rejected());
+    }
+
+    @Test
+    @DisplayName("Should cut the aimd limit on slow or failed requests and raise it on fast ones under load")
+    void deveAdaptarLimiteAimd() {
+        ConcurrencyLimiter limitador = new ConcurrencyLimiter("cadastrar", "AIMD", 20, 4, 40, Duration.ofMillis(100));
+
+        // One cut per round of a full limit of requests
+        for (int rodada = 0; rodada < 10; rodada++) {
+            completarRodada(limitador, LENTA, false);
+        }
+        // 20 * 0.9^10 = 6.97
+        assertEquals(6, limitador.limit());
+        for (int rodada = 0; rodada < 20; rodada++) {
+            completarRodada(limitador, RAPIDA, true);
+        }
+        assertEquals(4, limitador.limit());
+
+        // One fast request alone on the endpoint says nothing about a higher load
+        assertTrue(limitador.tryAcquire());
+        limitador.release(RAPIDA, false);
+        assertEquals(4, limitador.limit());
+
+        // Only the releases made while at least half of the limit is in use count, about half a step per round
+        for (int rodada = 0; rodada < 100; rodada++) {
+            int emUso = limitador.limit();
+            for (int i = 0; i < emUso; i++) {
+                assertTrue(limitador.tryAcquire());
+            }
+            for (int i = 0; i < emUso; i++) {
+                limitador.release(RAPIDA, false);
+            }
+        }
+        assertEquals(40, limitador.limit());
+    }
+
+    @Test
+    @DisplayName("Should cut the aimd limit once for a burst of slow requests admitted together")
+    void deveCortarLimiteUmaVezPorRajada() {
+        ConcurrencyLimiter limitador = new ConcurrencyLimiter("distancia", "aimd", 20, 2, 40, Duration.ofMillis(100));
+
+        completarRodada(limitador, LENTA, false);
+        assertEquals(18, limitador.limit());
+
+        // The next burst was admitted under the new limit, so it may cut again, once
+        completarRodada(limitador, LENTA, true);
+        assertEquals(16, limitador.limit());
+
+        // Slow requests trickling in one at a time cut once per limit's worth of completions
+        for (int i = 0; i < 16; i++) {
+            assertTrue(limitador.tryAcquire());
+            limitador.release(LENTA, false);
+        }
+        assertEquals(14, limitador.limit());
+    }
+
+    @Test
+    @DisplayName("Should only accept a known mode and limits within the configured bounds")
+    void deveValidarLimites() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConcurrencyLimiter("distancia", "gradient", 8, 2, 16, Duration.ofMillis(100)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConcurrencyLimiter("distancia", "fixed", 20, 2, 16, Duration.ofMillis(100)));
+    }
+
+    /** Takes every slot of the current limit, then releases them all with the same latency. */
+    private static void completarRodada(ConcurrencyLimiter limitador, long latenciaNanos, boolean falhou) {
+        int emUso = limitador.limit();
+        for (int i = 0; i < emUso; i++) {
+            assertTrue(limitador.tryAcquire());
+        }
+        for (int i = 0; i < emUso; i++) {
+            limitador.release(latenciaNanos, falhou);
+        }
+    }
+}
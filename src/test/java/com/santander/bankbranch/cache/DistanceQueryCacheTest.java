@@ -0,0 +1,85 @@
+package com.santander.bankbranch.cache;
+
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.event.BankBranchRegisteredEvent;
+import com.santander.bankbranch.event.BankBranchRemovedEvent;
+import com.santander.bankbranch.model.BankBranch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DistanceQueryCache Tests")
+class DistanceQueryCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DistanceQueryCache distanceQueryCache;
+    private List<double[]> buscas;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        distanceQueryCache = new DistanceQueryCache(true, 2, 100, meterRegistry);
+        buscas = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Should reuse the response for positions that round to the same key")
+    void deveReutilizarRespostaParaPosicoesArredondadas() {
+        DistanceBankBranchResponse primeira = distanceQueryCache.get(1.2341, 5.6789, this::buscar);
+        DistanceBankBranchResponse segunda = distanceQueryCache.get(1.2299, 5.6801, this::buscar);
+
+        assertSame(primeira, segunda);
+        assertEquals(1, buscas.size());
+        // The search runs at the rounded position
+        assertArrayEquals(new double[]{1.23, 5.68}, buscas.get(0), 1e-9);
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "distancia").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "distancia").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should recompute after a registration or a removal is committed")
+    void deveRecalcularAposCadastro() {
+        distanceQueryCache.get(1.0, 1.0, this::buscar);
+        long versaoAnterior = distanceQueryCache.version();
+        BankBranch agencia = BankBranch.builder().id(1L).posX(0.0).posY(0.0).build();
+
+        distanceQueryCache.onBankBranchRegistered(new BankBranchRegisteredEvent(agencia));
+        distanceQueryCache.get(1.0, 1.0, this::buscar);
+
+        assertEquals(versaoAnterior + 1, distanceQueryCache.version());
+        assertEquals(2, buscas.size());
+
+        distanceQueryCache.onBankBranchRemoved(new BankBranchRemovedEvent(agencia));
+        distanceQueryCache.get(1.0, 1.0, this::buscar);
+
+        assertEquals(versaoAnterior + 2, distanceQueryCache.version());
+        assertEquals(3, buscas.size());
+    }
+
+    @Test
+    @DisplayName("Should tag positions by the cache key and change the version tag on registration")
+    void deveIdentificarPosicaoEVersao() {
+        String versaoAnterior = distanceQueryCache.versionTag();
+
+        assertEquals(distanceQueryCache.positionKey(1.2341, 5.6789), distanceQueryCache.positionKey(1.2299, 5.6801));
+        assertNotEquals(distanceQueryCache.positionKey(1.23, 5.68), distanceQueryCache.positionKey(1.24, 5.68));
+
+        distanceQueryCache.onBankBranchRegistered(new BankBranchRegisteredEvent(
+                BankBranch.builder().id(1L).posX(0.0).posY(0.0).build()));
+
+        assertNotEquals(versaoAnterior, distanceQueryCache.versionTag());
+    }
+
+    private DistanceBankBranchResponse buscar(Double posX, Double posY) {
+        buscas.add(new double[]{posX, posY});
+        return new DistanceBankBranchResponse(Map.of("AGENCIA_" + buscas.size(), "distancia = 0.00"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.santander.bankbranch.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("GitHubOpaqueTokenIntrospector Tests")
+class GitHubOpaqueTokenIntrospectorTest {
+
+    private static final String TOKEN_VALIDO = "gho_valid";
+
+    private HttpServer servidor;
+    private final AtomicInteger chamadas = new AtomicInteger();
+    private volatile long atrasoMs;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.setExecutor(Executors.newCachedThreadPool());
+        servidor.createContext("/user", exchange -> {
+            chamadas.incrementAndGet();
+            dormir(atrasoMs);
+
+            boolean valido = ("Bearer " + TOKEN_VALIDO).equals(exchange.getRequestHeaders().getFirst("Authorization"));
+            byte[] corpo = (valido ? "{\"login\":\"octocat\"}" : "{\"message\":\"Bad credentials\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(valido ? 200 : 401, corpo.length);
+            try (OutputStream saida = exchange.getResponseBody()) {
+                saida.write(corpo);
+            }
+        });
+        servidor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+    }
+
+    @Test
+    @DisplayName("Should call GitHub only once for a cached token")
+    void deveChamarGitHubUmaVezParaTokenEmCache() {
+        GitHubOpaqueTokenIntrospector introspector = criarIntrospector(Duration.ofSeconds(2));
+
+        OAuth2AuthenticatedPrincipal primeiro = introspector.introspect(TOKEN_VALIDO);
+        OAuth2AuthenticatedPrincipal segundo = introspector.introspect(TOKEN_VALIDO);
+
+        assertEquals("octocat", primeiro.getName());
+        assertSame(primeiro, segundo);
+        assertEquals(1, chamadas.get());
+    }
+
+    @Test
+    @DisplayName("Should share one call among concurrent requests with the same token")
+    void deveCompartilharChamadaEntreRequisicoesConcorrentes() throws Exception {
+        GitHubOpaqueTokenIntrospector introspector = criarIntrospector(Duration.ofSeconds(2));
+        atrasoMs = 300;
+        int threads = 8;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<OAuth2AuthenticatedPrincipal>> futuros = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futuros.add(executor.submit(() -> {
+                    largada.await();
+                    return introspector.introspect(TOKEN_VALIDO);
+                }));
+            }
+            largada.countDown();
+
+            for (Future<OAuth2AuthenticatedPrincipal> futuro : futuros) {
+                assertEquals("octocat", futuro.get(10, TimeUnit.SECONDS).getName());
+            }
+            assertEquals(1, chamadas.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not cache rejected tokens")
+    void naoDeveGuardarTokensRejeitados() {
+        GitHubOpaqueTokenIntrospector introspector = criarIntrospector(Duration.ofSeconds(2));
+
+        assertThrows(HttpClientErrorException.Unauthorized.class, () -> introspector.introspect("gho_invalid"));
+        assertThrows(HttpClientErrorException.Unauthorized.class, () -> introspector.introspect("gho_invalid"));
+
+        assertEquals(2, chamadas.get());
+        assertEquals(0, introspector.cache().synchronous().estimatedSize());
+    }
+
+    @Test
+    @DisplayName("Should give up when GitHub does not answer within the read timeout")
+    void deveDesistirQuandoGitHubExcedeTimeoutDeLeitura() {
+        GitHubOpaqueTokenIntrospector introspector = criarIntrospector(Duration.ofMillis(200));
+        atrasoMs = 2_000;
+
+        long inicio = System.nanoTime();
+        assertThrows(ResourceAccessException.class, () -> introspector.introspect(TOKEN_VALIDO));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1_500);
+    }
+
+    private GitHubOpaqueTokenIntrospector criarIntrospector(Duration readTimeout) {
+        String uri = "http://localhost:" + servidor.getAddress().getPort() + "/user";
+        return new GitHubOpaqueTokenIntrospector(
+                uri,
+                new RestTemplateBuilder()
+                        .connectTimeout(Duration.ofSeconds(1))
+                        .readTimeout(readTimeout)
+                        .build(),
+                Duration.ofMinutes(5),
+                100
+        );
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.santander.bankbranch.config;
+
+import com.santander.bankbranch.BankBranchApiApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.core.DefaultOAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The real SecurityConfig chain, with only the GitHub token check replaced: any token other than
+ * {@link #TOKEN_INVALIDO} is a valid GitHub account without authorities.
+ */
+// The introspector bean replaces SecurityConfig's, which the filter chain then uses
+@SpringBootTest(classes = {BankBranchApiApplication.class, SecurityConfigTest.Introspeccao.class},
+        properties = {
+                "spring.main.allow-bean-definition-overriding=true",
+                "bankbranch.admissao.enabled=true"
+        })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DisplayName("SecurityConfig tests")
+class SecurityConfigTest {
+
+    private static final String TOKEN_INVALIDO = "gho_invalid";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @TestConfiguration
+    static class Introspeccao {
+
+        @Bean
+        public OpaqueTokenIntrospector opaqueTokenIntrospector() {
+            return token -> {
+                if (TOKEN_INVALIDO.equals(token)) {
+                    throw new BadOpaqueTokenException("Bad credentials");
+                }
+                return new DefaultOAuth2AuthenticatedPrincipal("octocat", Map.of("login", "octocat"), List.of());
+            };
+        }
+    }
+
+    @Test
+    @DisplayName("Should let an authenticated caller read the admission limiters")
+    void devePermitirLeituraDaAdmissao() throws Exception {
+        mockMvc.perform(get("/actuator/admission/cadastrar").header("Authorization", "Bearer gho_octocat"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.limit").value(16));
+    }
+
+    @Test
+    @DisplayName("Should refuse admission limit changes from an ordinary authenticated caller")
+    void deveRecusarAlteracaoDaAdmissao() throws Exception {
+        mockMvc.perform(post("/actuator/admission/cadastrar")
+                        .header("Authorization", "Bearer gho_octocat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"limit\": 2}"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/actuator/admission/cadastrar").header("Authorization", "Bearer gho_octocat"))
+                .andExpect(jsonPath("$.limit").value(16));
+    }
+
+    @Test
+    @DisplayName("Should require a valid token for the actuator except health")
+    void deveExigirTokenNoActuator() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/admission"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/admission").header("Authorization", "Bearer " + TOKEN_INVALIDO))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -1,24 +1,41 @@
 package com.santander.bankbranch.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.dto.CompactDistanceResponse;
+import com.santander.bankbranch.dto.DistanceBatchRequest;
+import com.santander.bankbranch.dto.DistanceBatchResponse;
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
 import com.santander.bankbranch.dto.RegisterBankBranchRequest;
 import com.santander.bankbranch.dto.RegisterBankBranchResponse;
 import com.santander.bankbranch.dto.DistanciaResponse;
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.dto.DistanceBankBranchLine;
 import com.santander.bankbranch.service.BankBranchService;
+import com.santander.bankbranch.service.BankBranchWriteBehindService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -31,6 +48,12 @@ class BankBranchControllerTest {
     @Mock
     private BankBranchService bankBranchService;
 
+    @Mock
+    private BankBranchWriteBehindService writeBehindService;
+
+    @Spy
+    private ObjectMapper jsonMapper = new ObjectMapper();
+
     @InjectMocks
     private BankBranchController bankBranchController;
 
@@ -101,4 +124,266 @@ class BankBranchControllerTest {
 
         verify(bankBranchService).registerBankBranch(any(RegisterBankBranchRequest.class));
     }
+
+    @Test
+    @DisplayName("Should return a bounded search when k and raio are given")
+    void deveRetornarBuscaLimitadaQuandoKERaioSaoInformados() throws Exception {
+        DistanciaResponse response = new DistanciaResponse(
+                new DistanciaResponse.PosicaoUsuario(0.0, 0.0),
+                Map.of("AGENCIA_1", "distancia = 5.00"),
+                1,
+                "AGENCIA_1",
+                5.0
+        );
+
+        when(bankBranchService.findNearbyBankBranches(0.0, 0.0, 1, 10.0)).thenReturn(response);
+
+        mockMvc.perform(get("/desafio/distancia")
+                .param("posX", "0.0")
+                .param("posY", "0.0")
+                .param("k", "1")
+                .param("raio", "10.0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.agencias.AGENCIA_1").value("distancia = 5.00"))
+                .andExpect(jsonPath("$.totalAgencias").value(1))
+                .andExpect(jsonPath("$.agenciaMaisProxima").value("AGENCIA_1"))
+                .andExpect(jsonPath("$.menorDistancia").value(5.0));
+
+        verify(bankBranchService, never()).findBankBranches(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should send an ETag and answer a matching If-None-Match with 304 without searching")
+    void deveResponder304QuandoETagNaoMudou() throws Exception {
+        when(bankBranchService.distanceETag(0.0, 0.0, null, null)).thenReturn("\"abc-1-0,0\"");
+        when(bankBranchService.findBankBranches(0.0, 0.0))
+                .thenReturn(new DistanceBankBranchResponse(Map.of("AGENCIA_1", "distancia = 0.00")));
+
+        mockMvc.perform(get("/desafio/distancia")
+                .param("posX", "0.0")
+                .param("posY", "0.0"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-1-0,0\""))
+                .andExpect(header().string("Cache-Control", "no-cache"));
+
+        mockMvc.perform(get("/desafio/distancia")
+                .param("posX", "0.0")
+                .param("posY", "0.0")
+                .header("If-None-Match", "\"abc-1-0,0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc-1-0,0\""))
+                .andExpect(content().string(""));
+
+        verify(bankBranchService, times(1)).findBankBranches(0.0, 0.0);
+    }
+
+    @Test
+    @DisplayName("Should vary the distance response by Accept on 200 and on 304")
+    void deveVariarRespostaPeloAccept() throws Exception {
+        when(bankBranchService.distanceETag(0.0, 0.0, null, null)).thenReturn("\"abc-1-0,0\"");
+        when(bankBranchService.findBankBranches(0.0, 0.0))
+                .thenReturn(new DistanceBankBranchResponse(Map.of("AGENCIA_1", "distancia = 0.00")));
+
+        for (MediaType tipo : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR)) {
+            mockMvc.perform(get("/desafio/distancia")
+                    .param("posX", "0.0")
+                    .param("posY", "0.0")
+                    .accept(tipo))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(tipo))
+                    .andExpect(header().stringValues("Vary", hasItem("Accept")));
+
+            mockMvc.perform(get("/desafio/distancia")
+                    .param("posX", "0.0")
+                    .param("posY", "0.0")
+                    .accept(tipo)
+                    .header("If-None-Match", "\"abc-1-0,0\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().stringValues("Vary", hasItem("Accept")));
+        }
+    }
+
+    @Test
+    @DisplayName("Should return the compact representation as JSON and as CBOR")
+    void deveRetornarRepresentacaoCompactaEmJsonECbor() throws Exception {
+        when(bankBranchService.findBankBranchesCompact(0.0, 0.0)).thenReturn(
+                new CompactDistanceResponse(0.0, 0.0, new long[]{2L, 1L}, new double[]{1.5, 7.25}));
+
+        mockMvc.perform(get("/desafio/distancia/v2")
+                .param("posX", "0.0")
+                .param("posY", "0.0"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.ids[0]").value(2))
+                .andExpect(jsonPath("$.distancias[1]").value(7.25));
+
+        MvcResult result = mockMvc.perform(get("/desafio/distancia/v2")
+                .param("posX", "0.0")
+                .param("posY", "0.0")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        CompactDistanceResponse lida = new CBORMapper().readValue(
+                result.getResponse().getContentAsByteArray(), CompactDistanceResponse.class);
+        assertArrayEquals(new long[]{2L, 1L}, lida.ids());
+        assertArrayEquals(new double[]{1.5, 7.25}, lida.distancias());
+    }
+
+    @Test
+    @DisplayName("Should encode the distance map as CBOR when requested")
+    void deveRetornarMapaDeDistanciasEmCbor() throws Exception {
+        BranchDistanceMap agencias = new BranchDistanceMap(1);
+        agencias.add("AGENCIA_1", 5.0);
+        when(bankBranchService.findBankBranches(0.0, 0.0)).thenReturn(new DistanceBankBranchResponse(agencias));
+
+        MvcResult result = mockMvc.perform(get("/desafio/distancia")
+                .param("posX", "0.0")
+                .param("posY", "0.0")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        Map<?, ?> lida = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), Map.class);
+        assertEquals(Map.of("AGENCIA_1", "distancia = 5.00"), lida.get("agencias"));
+    }
+
+    @Test
+    @DisplayName("Should return the nearest branches of every point of a batch")
+    void deveRetornarAgenciasDeCadaPontoDoLote() throws Exception {
+        DistanceBatchRequest request = new DistanceBatchRequest(
+                List.of(new DistanceBatchRequest.Ponto(0.0, 0.0), new DistanceBatchRequest.Ponto(10.0, 10.0)), 1);
+        DistanceBatchResponse response = new DistanceBatchResponse(List.of(
+                new DistanciaResponse(new DistanciaResponse.PosicaoUsuario(0.0, 0.0),
+                        Map.of("AGENCIA_1", "distancia = 5.00"), 1, "AGENCIA_1", 5.0),
+                new DistanciaResponse(new DistanciaResponse.PosicaoUsuario(10.0, 10.0),
+                        Map.of("AGENCIA_2", "distancia = 1.00"), 1, "AGENCIA_2", 1.0)), 2);
+        when(bankBranchService.findNearbyBankBranchesBatch(request)).thenReturn(response);
+
+        mockMvc.perform(post("/desafio/distancia/lote")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPontos").value(2))
+                .andExpect(jsonPath("$.resultados[1].posicaoUsuario.posX").value(10.0))
+                .andExpect(jsonPath("$.resultados[1].agencias.AGENCIA_2").value("distancia = 1.00"));
+    }
+
+    @Test
+    @DisplayName("Should stream branches as NDJSON when requested")
+    @SuppressWarnings("unchecked")
+    void deveTransmitirAgenciasEmNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<DistanceBankBranchLine> consumidor = invocation.getArgument(2);
+            consumidor.accept(new DistanceBankBranchLine("AGENCIA_1", "distancia = 5.00"));
+            consumidor.accept(new DistanceBankBranchLine("AGENCIA_2", "distancia = 7.07"));
+            return 2L;
+        }).when(bankBranchService).streamBankBranches(eq(0.0), eq(0.0), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/desafio/distancia")
+                .param("posX", "0.0")
+                .param("posY", "0.0")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"nome\":\"AGENCIA_1\",\"distancia\":\"distancia = 5.00\"}\n"
+                        + "{\"nome\":\"AGENCIA_2\",\"distancia\":\"distancia = 7.07\"}\n"));
+
+        verify(bankBranchService, never()).findBankBranches(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should return per-item results for a batch registration")
+    void deveRetornarResultadosPorItemNoCadastroEmLote() throws Exception {
+        List<RegisterBankBranchRequest> requests = List.of(
+                new RegisterBankBranchRequest(10.0, -5.0),
+                new RegisterBankBranchRequest(10.05, -5.0)
+        );
+        RegisterBankBranchBatchResponse response = new RegisterBankBranchBatchResponse(
+                List.of(
+                        new RegisterBankBranchResponse(1L, "AGENCIA_1", 10.0, -5.0, LocalDateTime.now(), "Branch registered successfully!"),
+                        new RegisterBankBranchResponse(null, null, 10.05, -5.0, null, "Error: Another branch in this batch is close to this position. Minimum distance allowed: 0.1 units")
+                ),
+                1,
+                1
+        );
+
+        when(bankBranchService.registerBankBranches(anyList())).thenReturn(response);
+
+        mockMvc.perform(post("/desafio/cadastrar/lote")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCadastradas").value(1))
+                .andExpect(jsonPath("$.totalRejeitadas").value(1))
+                .andExpect(jsonPath("$.resultados[0].nome").value("AGENCIA_1"))
+                .andExpect(jsonPath("$.resultados[1].id").doesNotExist());
+
+        verify(bankBranchService).registerBankBranches(requests);
+    }
+
+    @Test
+    @DisplayName("Should answer a write-behind registration once its group is committed")
+    void deveCadastrarAgenciaPelaFila() throws Exception {
+        RegisterBankBranchRequest request = new RegisterBankBranchRequest(10.0, -5.0);
+        RegisterBankBranchResponse response = new RegisterBankBranchResponse(
+                1L, "AGENCIA_1", 10.0, -5.0, LocalDateTime.now());
+        when(writeBehindService.submit(any(RegisterBankBranchRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        MvcResult result = mockMvc.perform(post("/desafio/cadastrar/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.nome").value("AGENCIA_1"));
+    }
+
+    @Test
+    @DisplayName("Should return 503 with Retry-After when the registration queue is full")
+    void deveRetornar503QuandoFilaCheia() throws Exception {
+        RegisterBankBranchRequest request = new RegisterBankBranchRequest(10.0, -5.0);
+        when(writeBehindService.submit(any(RegisterBankBranchRequest.class)))
+                .thenThrow(new RejectedExecutionException("Registration queue is full"));
+
+        MvcResult result = mockMvc.perform(post("/desafio/cadastrar/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.mensagem").value("Error: Registration queue is full"));
+    }
+
+    @Test
+    @DisplayName("Should return 503 with Retry-After for a queued registration failed on shutdown")
+    void deveRetornar503QuandoFilaEncerrada() throws Exception {
+        RegisterBankBranchRequest request = new RegisterBankBranchRequest(10.0, -5.0);
+        when(writeBehindService.submit(any(RegisterBankBranchRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("Write-behind registration stopped")));
+
+        MvcResult result = mockMvc.perform(post("/desafio/cadastrar/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.mensagem").value("Error: Write-behind registration stopped"));
+    }
 }
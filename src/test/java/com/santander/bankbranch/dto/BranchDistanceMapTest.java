@@ -0,0 +1,63 @@
+package com.santander.bankbranch.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BranchDistanceMap Tests")
+class BranchDistanceMapTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Should format distances exactly like String.format with %.2f")
+    void deveFormatarComoStringFormat() {
+        Random random = new Random(42);
+        double[] casosLimite = {0.0, -0.0, 0.005, 0.125, 1.005, 1.115, 2.675, 0.285, 123.455, 99.995, 402.49,
+                1e11 + 0.005, 1e12, 1e300, -1.0, Double.NaN, Double.POSITIVE_INFINITY};
+
+        for (double distancia : casosLimite) {
+            assertEquals(formatoOriginal(distancia), DistanceFormat.format(distancia), "distancia " + distancia);
+        }
+        for (int i = 0; i < 200_000; i++) {
+            double distancia = i % 2 == 0
+                    ? random.nextDouble() * 450.0
+                    : Math.round(random.nextDouble() * 450_000.0) / 1000.0 + 0.0005 * random.nextInt(3);
+            assertEquals(formatoOriginal(distancia), DistanceFormat.format(distancia), "distancia " + distancia);
+        }
+    }
+
+    @Test
+    @DisplayName("Should serialize the responses to the same JSON as a LinkedHashMap")
+    void deveSerializarComoLinkedHashMap() throws Exception {
+        BranchDistanceMap compacto = new BranchDistanceMap(1);
+        Map<String, String> original = new LinkedHashMap<>();
+        double[] distancias = {0.0, 1.115, 10.0, 22.3606797749979, 1e300};
+        for (int i = 0; i < distancias.length; i++) {
+            compacto.add("AGENCIA_" + (i + 1), distancias[i]);
+            original.put("AGENCIA_" + (i + 1), formatoOriginal(distancias[i]));
+        }
+
+        assertEquals(original, compacto);
+        assertEquals(
+                objectMapper.writeValueAsString(new DistanceBankBranchResponse(original)),
+                objectMapper.writeValueAsString(new DistanceBankBranchResponse(compacto)));
+
+        DistanciaResponse.PosicaoUsuario posicao = new DistanciaResponse.PosicaoUsuario(1.0, 2.0);
+        assertEquals(
+                objectMapper.writeValueAsString(new DistanciaResponse(posicao, original, 5, "AGENCIA_1", 0.0)),
+                objectMapper.writeValueAsString(new DistanciaResponse(posicao, compacto, 5, "AGENCIA_1", 0.0)));
+        assertEquals("{\"agencias\":{}}",
+                objectMapper.writeValueAsString(new DistanceBankBranchResponse(new BranchDistanceMap(0))));
+    }
+
+    private static String formatoOriginal(double distancia) {
+        return String.format("distancia = %.2f", distancia).replace(",", ".");
+    }
+}
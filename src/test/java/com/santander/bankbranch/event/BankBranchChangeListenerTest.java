@@ -0,0 +1,100 @@
+package com.santander.bankbranch.event;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({BankBranchSpatialIndex.class, DistanceQueryCache.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("BankBranch change feed tests")
+class BankBranchChangeListenerTest {
+
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    @Autowired
+    private BankBranchSpatialIndex spatialIndex;
+
+    @Autowired
+    private DistanceQueryCache distanceQueryCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transacao;
+
+    @BeforeEach
+    void setUp() {
+        bankBranchRepository.deleteAll();
+        transacao = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    @DisplayName("Should publish inserts to the index and the cache only once they commit")
+    void devePublicarInsercoesAposCommit() {
+        int tamanhoAnterior = spatialIndex.size();
+        long versaoAnterior = distanceQueryCache.version();
+
+        BankBranch salva = transacao.execute(status -> {
+            BankBranch agencia = bankBranchRepository.saveAndFlush(novaAgencia(10.0, 10.0));
+            bankBranchRepository.saveAndFlush(novaAgencia(20.0, 20.0));
+            assertEquals(tamanhoAnterior, spatialIndex.size());
+            return agencia;
+        });
+
+        assertEquals(tamanhoAnterior + 2, spatialIndex.size());
+        assertEquals(versaoAnterior + 2, distanceQueryCache.version());
+        assertEquals(salva.getId(), spatialIndex.findNearest(10.0, 10.0, 1, Double.POSITIVE_INFINITY).id(0));
+    }
+
+    @Test
+    @DisplayName("Should not publish inserts that are rolled back")
+    void naoDevePublicarInsercoesDesfeitas() {
+        int tamanhoAnterior = spatialIndex.size();
+        long versaoAnterior = distanceQueryCache.version();
+
+        transacao.executeWithoutResult(status -> {
+            bankBranchRepository.saveAndFlush(novaAgencia(30.0, 30.0));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(tamanhoAnterior, spatialIndex.size());
+        assertEquals(versaoAnterior, distanceQueryCache.version());
+        assertEquals(0, bankBranchRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should publish committed deletes so the index drops the branch")
+    void devePublicarRemocoesAposCommit() {
+        BankBranch salva = transacao.execute(status -> bankBranchRepository.saveAndFlush(novaAgencia(40.0, 40.0)));
+        int tamanhoAnterior = spatialIndex.size();
+        long versaoAnterior = distanceQueryCache.version();
+
+        transacao.executeWithoutResult(status -> bankBranchRepository.deleteById(salva.getId()));
+
+        assertEquals(tamanhoAnterior - 1, spatialIndex.size());
+        assertEquals(versaoAnterior + 1, distanceQueryCache.version());
+        assertTrue(spatialIndex.findNearest(40.0, 40.0, 1, 0.1).isEmpty());
+    }
+
+    private static BankBranch novaAgencia(double posX, double posY) {
+        return BankBranch.builder().posX(posX).posY(posY).build();
+    }
+}
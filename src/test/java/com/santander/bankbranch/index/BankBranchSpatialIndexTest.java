@@ -0,0 +1,231 @@
+package com.santander.bankbranch.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BankBranchSpatialIndex Tests")
+class BankBranchSpatialIndexTest {
+
+    private BankBranchSpatialIndex spatialIndex;
+    private List<BranchPoint> agencias;
+
+    @BeforeEach
+    void setUp() {
+        spatialIndex = new BankBranchSpatialIndex();
+        agencias = new ArrayList<>();
+
+        Random random = new Random(42);
+        for (long id = 1; id <= 500; id++) {
+            // Coarse coordinates so several branches end up at the same distance
+            double posX = Math.round(random.nextDouble() * 360 - 180);
+            double posY = Math.round(random.nextDouble() * 180 - 90);
+            agencias.add(new BranchPoint(id, posX, posY, LocalDateTime.now()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not be ready before loading")
+    void naoDeveEstarProntoAntesDeCarregar() {
+        assertFalse(spatialIndex.isReady());
+        assertEquals(0, spatialIndex.size());
+    }
+
+    @Test
+    @DisplayName("Should order all branches exactly like a full scan")
+    void deveOrdenarTodasAsAgenciasComoVarreduraCompleta() {
+        spatialIndex.load(agencias);
+
+        assertTrue(spatialIndex.isReady());
+        assertEquals(500, spatialIndex.size());
+        assertEquals(varreduraCompleta(12.0, -7.0, Integer.MAX_VALUE, Double.POSITIVE_INFINITY),
+                ids(spatialIndex.findOrdered(12.0, -7.0)));
+    }
+
+    @Test
+    @DisplayName("Should return the k nearest branches with ties broken by id")
+    void deveRetornarAsKMaisProximas() {
+        spatialIndex.load(agencias);
+
+        for (int k : new int[]{1, 5, 37}) {
+            assertEquals(varreduraCompleta(0.0, 0.0, k, Double.POSITIVE_INFINITY),
+                    ids(spatialIndex.findNearest(0.0, 0.0, k, Double.POSITIVE_INFINITY)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer a batch of positions like one search per position")
+    void deveResponderLoteComoBuscasIndividuais() {
+        spatialIndex.load(agencias);
+        Random random = new Random(7);
+        double[] xs = new double[200];
+        double[] ys = new double[200];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextDouble() * 360 - 180;
+            ys[i] = random.nextDouble() * 180 - 90;
+        }
+
+        BranchDistances[] resultados = spatialIndex.findNearest(xs, ys, 10, Double.POSITIVE_INFINITY);
+
+        assertEquals(xs.length, resultados.length);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(varreduraCompleta(xs[i], ys[i], 10, Double.POSITIVE_INFINITY), ids(resultados[i]));
+        }
+    }
+
+    @Test
+    @DisplayName("Should only return branches within the radius")
+    void deveRetornarApenasAgenciasDentroDoRaio() {
+        spatialIndex.load(agencias);
+
+        BranchDistances resultados = spatialIndex.findNearest(50.0, 20.0, Integer.MAX_VALUE, 30.0);
+
+        assertFalse(resultados.isEmpty());
+        for (int i = 0; i < resultados.size(); i++) {
+            assertTrue(resultados.distance(i) <= 30.0);
+        }
+        assertEquals(varreduraCompleta(50.0, 20.0, Integer.MAX_VALUE, 30.0), ids(resultados));
+    }
+
+    @Test
+    @DisplayName("Should keep the ordering when branches are added one by one")
+    void deveManterOrdenacaoComInsercoesIncrementais() {
+        spatialIndex.load(List.of());
+        // Sorted insertions degenerate the tree and force a rebuild
+        agencias.stream()
+                .sorted(Comparator.comparingDouble(BranchPoint::posX))
+                .forEach(spatialIndex::add);
+
+        assertEquals(500, spatialIndex.size());
+        assertEquals(varreduraCompleta(-100.0, 45.0, 10, Double.POSITIVE_INFINITY),
+                ids(spatialIndex.findNearest(-100.0, 45.0, 10, Double.POSITIVE_INFINITY)));
+        assertEquals(varreduraCompleta(-100.0, 45.0, Integer.MAX_VALUE, Double.POSITIVE_INFINITY),
+                ids(spatialIndex.findOrdered(-100.0, 45.0)));
+    }
+
+    @Test
+    @DisplayName("Should answer the nearest branch from the raster exactly like a full scan")
+    void deveResponderMaisProximaPeloRasterComoVarreduraCompleta() {
+        BankBranchSpatialIndex comRaster = new BankBranchSpatialIndex(2.0);
+        comRaster.load(agencias);
+
+        // Half-unit steps put many positions at the same distance from integer branch coordinates
+        for (double posX = -180.0; posX <= 180.0; posX += 7.5) {
+            for (double posY = -90.0; posY <= 90.0; posY += 4.5) {
+                assertEquals(varreduraCompleta(posX, posY, 1, Double.POSITIVE_INFINITY),
+                        ids(comRaster.findNearest(posX, posY, 1, Double.POSITIVE_INFINITY)));
+                assertEquals(varreduraCompleta(posX, posY, 1, 3.0), ids(comRaster.findNearest(posX, posY, 1, 3.0)));
+            }
+        }
+        assertEquals(varreduraCompleta(250.0, 100.0, 1, Double.POSITIVE_INFINITY),
+                ids(comRaster.findNearest(250.0, 100.0, 1, Double.POSITIVE_INFINITY)));
+        assertTrue(comRaster.memoryBytes() > spatialIndex.memoryBytes());
+    }
+
+    @Test
+    @DisplayName("Should keep the raster exact when branches are added one by one")
+    void deveManterRasterComInsercoesIncrementais() {
+        BankBranchSpatialIndex comRaster = new BankBranchSpatialIndex(2.0);
+        comRaster.load(agencias.subList(0, 50));
+        agencias.subList(50, agencias.size()).forEach(comRaster::add);
+
+        Random random = new Random(11);
+        for (int i = 0; i < 2_000; i++) {
+            double posX = random.nextDouble() * 360 - 180;
+            double posY = random.nextDouble() * 180 - 90;
+            assertEquals(varreduraCompleta(posX, posY, 1, Double.POSITIVE_INFINITY),
+                    ids(comRaster.findNearest(posX, posY, 1, Double.POSITIVE_INFINITY)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should leave removed branches out of every search, the raster and the snapshot")
+    void deveIgnorarAgenciasRemovidas() {
+        BankBranchSpatialIndex comRaster = new BankBranchSpatialIndex(2.0);
+        comRaster.load(agencias);
+
+        // 200 of 500 stay below the compaction threshold, the next 100 go over it
+        for (int rodada = 0; rodada < 2; rodada++) {
+            int quantidade = rodada == 0 ? 200 : 100;
+            for (int i = 0; i < quantidade; i++) {
+                assertTrue(comRaster.remove(agencias.remove(0).id()));
+            }
+
+            assertEquals(agencias.size(), comRaster.size());
+            assertEquals(agencias.size(), comRaster.snapshot().size());
+            assertEquals(varreduraCompleta(-20.0, 10.0, Integer.MAX_VALUE, Double.POSITIVE_INFINITY),
+                    ids(comRaster.findOrdered(-20.0, 10.0)));
+            assertEquals(varreduraCompleta(-20.0, 10.0, 15, 40.0), ids(comRaster.findNearest(-20.0, 10.0, 15, 40.0)));
+            Random random = new Random(rodada);
+            for (int i = 0; i < 500; i++) {
+                double posX = random.nextDouble() * 360 - 180;
+                double posY = random.nextDouble() * 180 - 90;
+                assertEquals(varreduraCompleta(posX, posY, 1, Double.POSITIVE_INFINITY),
+                        ids(comRaster.findNearest(posX, posY, 1, Double.POSITIVE_INFINITY)));
+            }
+        }
+        assertEquals(300, comRaster.removals());
+        assertFalse(comRaster.remove(1L));
+        assertFalse(comRaster.contains(1L));
+        assertTrue(comRaster.contains(agencias.get(0).id()));
+        assertFalse(comRaster.add(agencias.get(0)));
+        assertEquals(agencias.size(), comRaster.size());
+    }
+
+    @Test
+    @DisplayName("Should keep branches added before the initial load finished")
+    void deveManterAgenciasAdicionadasAntesDoCarregamento() {
+        BranchPoint nova = new BranchPoint(501L, 1.0, 1.0, LocalDateTime.now());
+        spatialIndex.add(nova);
+
+        spatialIndex.load(agencias);
+
+        assertEquals(501, spatialIndex.size());
+        assertEquals(501L, spatialIndex.findNearest(1.0, 1.0, 1, Double.POSITIVE_INFINITY).id(0));
+    }
+
+    @Test
+    @DisplayName("Should derive names from the id and report the memory of its columns")
+    void deveDerivarNomesEReportarMemoria() {
+        spatialIndex.load(agencias);
+
+        BranchDistances resultados = spatialIndex.findNearest(0.0, 0.0, 3, Double.POSITIVE_INFINITY);
+
+        assertEquals("AGENCIA_" + resultados.id(0), resultados.name(0));
+        // 32 bytes of columns and 8 of tree per branch, plus spare capacity
+        assertTrue(spatialIndex.memoryBytes() >= 40L * 500);
+        assertTrue(spatialIndex.memoryBytes() < 40L * 1024 + 1024);
+    }
+
+    private List<Long> varreduraCompleta(double posX, double posY, int limite, double raio) {
+        Comparator<BranchPoint> porDistancia = Comparator
+                .comparingDouble((BranchPoint agencia) -> distancia(agencia, posX, posY))
+                .thenComparingLong(BranchPoint::id);
+        return agencias.stream()
+                .filter(agencia -> distancia(agencia, posX, posY) <= raio)
+                .sorted(porDistancia)
+                .limit(limite)
+                .map(BranchPoint::id)
+                .toList();
+    }
+
+    private static double distancia(BranchPoint agencia, double posX, double posY) {
+        return BankBranchSpatialIndex.distance(agencia.posX(), agencia.posY(), posX, posY);
+    }
+
+    private static List<Long> ids(BranchDistances resultados) {
+        List<Long> ids = new ArrayList<>(resultados.size());
+        for (int i = 0; i < resultados.size(); i++) {
+            ids.add(resultados.id(i));
+        }
+        return ids;
+    }
+}
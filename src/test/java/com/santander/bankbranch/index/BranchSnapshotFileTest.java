@@ -0,0 +1,69 @@
+package com.santander.bankbranch.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BranchSnapshotFile Tests")
+class BranchSnapshotFileTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    @DisplayName("Should read back every column written to the snapshot")
+    void deveLerDeVoltaTodasAsColunas() throws Exception {
+        ColumnarBranchStore agencias = new ColumnarBranchStore();
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_456_000);
+        for (long id = 1; id <= 2000; id++) {
+            agencias.add(id * 3, -180.0 + id * 0.1, 90.0 - id * 0.05, base.plusSeconds(id));
+        }
+        Path arquivo = diretorio.resolve("snapshots/branches.snapshot");
+
+        BranchSnapshotFile.write(arquivo, agencias);
+        BranchSnapshotFile.Snapshot snapshot = BranchSnapshotFile.read(arquivo);
+
+        ColumnarBranchStore lidas = snapshot.branches();
+        assertEquals(2000, lidas.size());
+        for (int i = 0; i < lidas.size(); i++) {
+            assertEquals(agencias.id(i), lidas.id(i));
+            assertEquals(agencias.posX(i), lidas.posX(i));
+            assertEquals(agencias.posY(i), lidas.posY(i));
+            assertEquals(agencias.creationDate(i), lidas.creationDate(i));
+        }
+        assertEquals(base.plusSeconds(2000), ColumnarBranchStore.fromEpochNanos(snapshot.newestCreationEpochNanos()));
+        assertEquals(1, Files.list(arquivo.getParent()).count());
+    }
+
+    @Test
+    @DisplayName("Should reject a snapshot with a corrupted body or an unknown version")
+    void deveRejeitarSnapshotCorrompido() throws Exception {
+        ColumnarBranchStore agencias = new ColumnarBranchStore();
+        agencias.add(1L, 10.0, 20.0, LocalDateTime.now());
+        agencias.add(2L, 30.0, 40.0, LocalDateTime.now());
+        Path arquivo = diretorio.resolve("branches.snapshot");
+        BranchSnapshotFile.write(arquivo, agencias);
+
+        try (RandomAccessFile acesso = new RandomAccessFile(arquivo.toFile(), "rw")) {
+            acesso.seek(64 + 8 * 2 + 3);
+            acesso.write(0x7F);
+        }
+        IllegalStateException checksum = assertThrows(IllegalStateException.class, () -> BranchSnapshotFile.read(arquivo));
+        assertTrue(checksum.getMessage().contains("checksum"));
+
+        BranchSnapshotFile.write(arquivo, agencias);
+        try (RandomAccessFile acesso = new RandomAccessFile(arquivo.toFile(), "rw")) {
+            acesso.seek(4);
+            acesso.write(BranchSnapshotFile.VERSAO + 1);
+        }
+        IllegalStateException versao = assertThrows(IllegalStateException.class, () -> BranchSnapshotFile.read(arquivo));
+        assertTrue(versao.getMessage().contains("version"));
+    }
+}
@@ -1,6 +1,7 @@
 package com.santander.bankbranch.repository;
 
 import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -11,6 +12,7 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,6 +76,22 @@ class BankBranchRepositoryTest {
         assertNotNull(agenciaSalva.getCreationDate());
     }
 
+    @Test
+    @DisplayName("Deve gravar o nome derivado do id já no INSERT")
+    void deveGravarNomeDerivadoDoIdNoInsert() {
+        BankBranch novaAgencia = BankBranch.builder()
+                .posX(7.0)
+                .posY(7.0)
+                .build();
+
+        // name é NOT NULL: o flush só passa se o INSERT já levar o nome
+        entityManager.persistAndFlush(novaAgencia);
+        entityManager.clear();
+
+        BankBranch agenciaLida = bankBranchRepository.findById(novaAgencia.getId()).orElseThrow();
+        assertEquals(BankBranch.nomeDaAgencia(novaAgencia.getId()), agenciaLida.getName());
+    }
+
     @Test
     @DisplayName("Deve buscar agência por ID")
     void deveBuscarAgenciaPorId() {
@@ -234,4 +252,68 @@ class BankBranchRepositoryTest {
         boolean distanteAgencia2 = bankBranchRepository.existsNearbyBankBranches(5.0, 4.0, 0.1);
         assertFalse(distanteAgencia2);
     }
+
+    @Test
+    @DisplayName("Deve persistir a célula da grade calculada a partir da posição")
+    void devePersistirCelulaDaGrade() {
+        BankBranch agencia = bankBranchRepository.saveAndFlush(BankBranch.builder()
+                .posX(-12.34)
+                .posY(56.78)
+                .build());
+
+        assertEquals(GridCell.of(-12.34, 56.78), agencia.getGridCell());
+        assertEquals(GridCell.chave(-124, 567), agencia.getGridCell());
+    }
+
+    @Test
+    @DisplayName("Deve encontrar agência próxima em célula vizinha da grade")
+    void deveEncontrarAgenciaProximaEmCelulaVizinha() {
+        entityManager.persistAndFlush(BankBranch.builder()
+                .posX(-20.01)
+                .posY(-30.01)
+                .build());
+
+        // Diagonal neighbour across both cell boundaries
+        assertTrue(bankBranchRepository.existsNearbyBankBranches(-19.99, -29.99, 0.1));
+        assertFalse(bankBranchRepository.existsNearbyBankBranches(-19.85, -29.99, 0.1));
+    }
+
+    @Test
+    @DisplayName("Deve buscar apenas agências dentro do raio respeitando o limite")
+    void deveBuscarAgenciasDentroDoRaio() {
+        List<Object[]> resultados = bankBranchRepository.findNearbyBankBranchesWithinRadius(0.0, 0.0, 5.0, 10);
+
+        assertEquals(2, resultados.size());
+        assertEquals(agencia1.getId(), resultados.get(0)[0]);
+        assertEquals(agencia2.getId(), resultados.get(1)[0]);
+
+        List<Object[]> limitados = bankBranchRepository.findNearbyBankBranchesWithinRadius(0.0, 0.0, 5.0, 1);
+        assertEquals(1, limitados.size());
+        assertEquals(agencia1.getId(), limitados.get(0)[0]);
+    }
+
+    @Test
+    @DisplayName("Deve transmitir agências ordenadas por distância")
+    void deveTransmitirAgenciasOrdenadasPorDistancia() {
+        try (Stream<Object[]> resultados = bankBranchRepository.streamNearbyBankBranches(10.0, 10.0)) {
+            List<Object> ids = resultados.map(resultado -> resultado[0]).toList();
+
+            assertEquals(List.of(agencia3.getId(), agencia2.getId(), agencia1.getId()), ids);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve transmitir id, posição e data de criação para o índice espacial")
+    void deveTransmitirPontosParaOIndice() {
+        try (Stream<Object[]> resultados = bankBranchRepository.streamBranchPoints()) {
+            Object[] linha = resultados
+                    .filter(resultado -> agencia2.getId().equals(((Number) resultado[0]).longValue()))
+                    .findFirst()
+                    .orElseThrow();
+
+            assertEquals(3.0, ((Number) linha[1]).doubleValue());
+            assertEquals(4.0, ((Number) linha[2]).doubleValue());
+            assertInstanceOf(java.sql.Timestamp.class, linha[3]);
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package com.santander.bankbranch.repository;
+
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.model.BankBranch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(JdbcBankBranchReadRepository.class)
+@TestPropertySource(properties = "bankbranch.leitura.implementacao=jdbc")
+@DisplayName("Testes do Repositório JdbcBankBranchReadRepository")
+class JdbcBankBranchReadRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    @Autowired
+    private JdbcBankBranchReadRepository jdbcReadRepository;
+
+    @BeforeEach
+    void setUp() {
+        bankBranchRepository.deleteAll();
+
+        double[][] posicoes = {{0.0, 0.0}, {3.0, 4.0}, {10.0, 10.0}, {-4.0, -3.0}, {-20.0, 15.0}};
+        for (int i = 0; i < posicoes.length; i++) {
+            entityManager.persist(BankBranch.builder()
+                    .name("AGENCIA_T" + i)
+                    .posX(posicoes[i][0])
+                    .posY(posicoes[i][1])
+                    .creationDate(LocalDateTime.now())
+                    .build());
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Deve retornar as mesmas agências, na mesma ordem, que as consultas JPA")
+    void deveRetornarMesmoResultadoDasConsultasJpa() {
+        assertMesmoResultado(bankBranchRepository.findNearbyBankBranches(1.0, 1.0),
+                jdbcReadRepository.findNearbyBankBranches(1.0, 1.0));
+        assertMesmoResultado(bankBranchRepository.findNearbyBankBranchesLimits(1.0, 1.0, 2),
+                jdbcReadRepository.findNearbyBankBranchesLimits(1.0, 1.0, 2));
+        assertMesmoResultado(bankBranchRepository.findNearbyBankBranchesWithinRadius(1.0, 1.0, 6.0, 10),
+                jdbcReadRepository.findNearbyBankBranchesWithinRadius(1.0, 1.0, 6.0, 10));
+    }
+
+    @Test
+    @DisplayName("Deve entregar as linhas ao consumidor ordenadas por distância")
+    void deveEntregarLinhasOrdenadasAoConsumidor() {
+        List<String> nomes = new ArrayList<>();
+        List<Double> distancias = new ArrayList<>();
+
+        long total = jdbcReadRepository.streamNearbyBankBranches(0.0, 0.0, (nome, distancia) -> {
+            nomes.add(nome);
+            distancias.add(distancia);
+        });
+
+        assertEquals(5, total);
+        assertEquals(List.of("AGENCIA_T0", "AGENCIA_T1", "AGENCIA_T3", "AGENCIA_T2", "AGENCIA_T4"), nomes);
+        assertEquals(0.0, distancias.get(0), 0.0001);
+        assertEquals(5.0, distancias.get(1), 0.0001);
+        assertEquals(5.0, distancias.get(2), 0.0001);
+    }
+
+    private void assertMesmoResultado(List<Object[]> esperado, BranchDistanceMap atual) {
+        assertEquals(esperado.size(), atual.size());
+        for (int i = 0; i < esperado.size(); i++) {
+            assertEquals(esperado.get(i)[1], atual.name(i));
+            assertEquals(((Number) esperado.get(i)[5]).doubleValue(), atual.distance(i));
+        }
+    }
+}
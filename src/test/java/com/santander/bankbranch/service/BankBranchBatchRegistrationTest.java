@@ -0,0 +1,66 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// JDBC batching as configured in application.yml
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true"
+})
+@ActiveProfiles("test")
+@Import({BankBranchService.class, BankBranchSpatialIndex.class, DistanceQueryCache.class, SimpleMeterRegistry.class,
+        GridCellLocks.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Batch branch registration tests")
+class BankBranchBatchRegistrationTest {
+
+    private static final int AGENCIAS = 1000;
+
+    @Autowired
+    private BankBranchService bankBranchService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Should insert a batch with JDBC batches and no UPDATE of the names")
+    void deveCadastrarLoteSemUpdate() {
+        List<RegisterBankBranchRequest> requests = new ArrayList<>();
+        for (int i = 0; i < AGENCIAS; i++) {
+            requests.add(new RegisterBankBranchRequest(-75.0 + (i % 100) * 0.5, -45.0 + (i / 100) * 0.5));
+        }
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        RegisterBankBranchBatchResponse response = bankBranchService.registerBankBranches(requests);
+
+        assertEquals(AGENCIAS, response.totalCadastradas());
+        assertEquals(AGENCIAS, estatisticas.getEntityInsertCount());
+        assertEquals(0, estatisticas.getEntityUpdateCount());
+        // Cell queries, sequence calls and one INSERT per batch of 50, instead of one statement per branch
+        assertTrue(estatisticas.getPrepareStatementCount() < 100,
+                "Prepared " + estatisticas.getPrepareStatementCount() + " statements");
+    }
+}
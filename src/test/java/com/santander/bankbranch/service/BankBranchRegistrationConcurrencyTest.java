@@ -0,0 +1,240 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({BankBranchService.class, BankBranchSpatialIndex.class, DistanceQueryCache.class, SimpleMeterRegistry.class,
+        GridCellLocks.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Concurrent branch registration tests")
+class BankBranchRegistrationConcurrencyTest {
+
+    private static final int AGENCIAS_POR_RODADA = 200;
+
+    @Autowired
+    private BankBranchService bankBranchService;
+
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger proximaPosicao = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        bankBranchRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should not block a registration while another one is still uncommitted")
+    void naoDeveBloquearCadastroEnquantoOutroNaoFoiConfirmado() throws Exception {
+        CountDownLatch cadastroEmAndamento = new CountDownLatch(1);
+        CountDownLatch liberarCommit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<RegisterBankBranchResponse> lento = executor.submit(() ->
+                    new TransactionTemplate(transactionManager).execute(status -> {
+                        RegisterBankBranchResponse response = bankBranchService.registerBankBranch(
+                                new RegisterBankBranchRequest(-100.0, -50.0));
+                        cadastroEmAndamento.countDown();
+                        aguardar(liberarCommit);
+                        return response;
+                    }));
+
+            assertTrue(cadastroEmAndamento.await(10, TimeUnit.SECONDS));
+
+            // With the old COUNT(*) ... FOR UPDATE this call waited for the open transaction above
+            long inicio = System.nanoTime();
+            RegisterBankBranchResponse rapido = bankBranchService.registerBankBranch(
+                    new RegisterBankBranchRequest(100.0, 50.0));
+            long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+            liberarCommit.countDown();
+            RegisterBankBranchResponse primeiro = lento.get(10, TimeUnit.SECONDS);
+
+            assertTrue(duracaoMs < 5_000, "Registration waited " + duracaoMs + " ms for an unrelated transaction");
+            assertNotEquals(primeiro.nome(), rapido.nome());
+            assertEquals(2, bankBranchRepository.count());
+        } finally {
+            liberarCommit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should register concurrently with unique names derived from ids")
+    void deveCadastrarConcorrentementeComNomesUnicos() throws Exception {
+        Set<String> nomes = new HashSet<>();
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            List<RegisterBankBranchResponse> respostas = cadastrar(threads, AGENCIAS_POR_RODADA);
+            for (RegisterBankBranchResponse response : respostas) {
+                assertEquals(BankBranch.nomeDaAgencia(response.id()), response.nome());
+                assertTrue(nomes.add(response.nome()), "Duplicated branch name " + response.nome());
+            }
+        }
+
+        List<BankBranch> salvas = bankBranchRepository.findAll();
+        assertEquals(4 * AGENCIAS_POR_RODADA, salvas.size());
+        assertTrue(salvas.stream().allMatch(agencia -> BankBranch.nomeDaAgencia(agencia.getId()).equals(agencia.getName())));
+    }
+
+    @Test
+    @DisplayName("Should make a nearby registration wait for the uncommitted one and then reject it")
+    void deveAguardarCadastroProximoNaoConfirmado() throws Exception {
+        CountDownLatch cadastroEmAndamento = new CountDownLatch(1);
+        CountDownLatch liberarCommit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<RegisterBankBranchResponse> primeiro = executor.submit(() ->
+                    new TransactionTemplate(transactionManager).execute(status -> {
+                        RegisterBankBranchResponse response = bankBranchService.registerBankBranch(
+                                new RegisterBankBranchRequest(20.0, 20.0));
+                        cadastroEmAndamento.countDown();
+                        aguardar(liberarCommit);
+                        return response;
+                    }));
+            assertTrue(cadastroEmAndamento.await(10, TimeUnit.SECONDS));
+
+            Future<RegisterBankBranchResponse> vizinho = executor.submit(() ->
+                    bankBranchService.registerBankBranch(new RegisterBankBranchRequest(20.05, 20.0)));
+            assertThrows(TimeoutException.class, () -> vizinho.get(300, TimeUnit.MILLISECONDS));
+
+            liberarCommit.countDown();
+            assertNotNull(primeiro.get(10, TimeUnit.SECONDS).id());
+            ExecutionException erro =
+                    assertThrows(ExecutionException.class, () -> vizinho.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, erro.getCause());
+            assertEquals(1, bankBranchRepository.count());
+        } finally {
+            liberarCommit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should never leave two branches closer than the minimum distance under concurrent registrations")
+    void naoDeveDeixarAgenciasProximasSobConcorrencia() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger rejeicoes = new AtomicInteger();
+
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long semente = t;
+                futuros.add(executor.submit(() -> {
+                    // A 1.5 x 1.5 square holds only a couple hundred branches 0.1 apart, so most attempts collide
+                    Random random = new Random(semente);
+                    aguardar(largada);
+                    for (int i = 0; i < 150; i++) {
+                        if (i % 10 == 0) {
+                            List<RegisterBankBranchRequest> lote = new ArrayList<>();
+                            for (int j = 0; j < 5; j++) {
+                                lote.add(new RegisterBankBranchRequest(30.0 + random.nextDouble() * 1.5, 30.0 + random.nextDouble() * 1.5));
+                            }
+                            rejeicoes.addAndGet(bankBranchService.registerBankBranches(lote).totalRejeitadas());
+                            continue;
+                        }
+                        try {
+                            bankBranchService.registerBankBranch(
+                                    new RegisterBankBranchRequest(30.0 + random.nextDouble() * 1.5, 30.0 + random.nextDouble() * 1.5));
+                        } catch (IllegalArgumentException e) {
+                            rejeicoes.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> futuro : futuros) {
+                futuro.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<BankBranch> salvas = bankBranchRepository.findAll();
+        assertTrue(rejeicoes.get() > 0, "The stress test produced no conflicting registrations");
+        for (int i = 0; i < salvas.size(); i++) {
+            for (int j = i + 1; j < salvas.size(); j++) {
+                BankBranch a = salvas.get(i);
+                BankBranch b = salvas.get(j);
+                double distancia = Math.hypot(a.getPosX() - b.getPosX(), a.getPosY() - b.getPosY());
+                assertTrue(distancia > GridCell.DISTANCIA_MINIMA_ENTRE_AGENCIAS,
+                        String.format("%s and %s are %.4f apart", a.getName(), b.getName(), distancia));
+            }
+        }
+    }
+
+    private List<RegisterBankBranchResponse> cadastrar(int threads, int total) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<RegisterBankBranchResponse>> futuros = new ArrayList<>();
+            for (int i = 0; i < total; i++) {
+                futuros.add(executor.submit(() -> bankBranchService.registerBankBranch(proximaRequisicao())));
+            }
+
+            List<RegisterBankBranchResponse> respostas = new ArrayList<>();
+            for (Future<RegisterBankBranchResponse> futuro : futuros) {
+                respostas.add(futuro.get(30, TimeUnit.SECONDS));
+            }
+            return respostas;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RegisterBankBranchRequest proximaRequisicao() {
+        // Half a unit apart on a 300-wide grid, well above the minimum distance
+        int posicao = proximaPosicao.getAndIncrement();
+        return new RegisterBankBranchRequest(-75.0 + (posicao % 300) * 0.5, -45.0 + (posicao / 300) * 0.5);
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,22 +1,42 @@
 package com.santander.bankbranch.service;
 
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
 import com.santander.bankbranch.dto.RegisterBankBranchRequest;
 import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.dto.BranchDistanceMap;
+import com.santander.bankbranch.dto.CompactDistanceResponse;
+import com.santander.bankbranch.dto.DistanceBatchRequest;
+import com.santander.bankbranch.dto.DistanceBatchResponse;
 import com.santander.bankbranch.dto.DistanciaResponse;
+import com.santander.bankbranch.dto.DistanceBankBranchLine;
+import com.santander.bankbranch.dto.DistanceBankBranchResponse;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchDistances;
 import com.santander.bankbranch.model.BankBranch;
 import com.santander.bankbranch.repository.BankBranchRepository;
+import com.santander.bankbranch.repository.JdbcBankBranchReadRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -28,6 +48,18 @@ class BankBranchServiceTest {
     @Mock
     private BankBranchRepository bankBranchRepository;
 
+    @Mock
+    private BankBranchSpatialIndex spatialIndex;
+
+    @Mock
+    private DistanceQueryCache distanceQueryCache;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private GridCellLocks gridCellLocks = new GridCellLocks(64);
+
     @InjectMocks
     private BankBranchService bankBranchService;
 
@@ -53,7 +85,6 @@ class BankBranchServiceTest {
     @DisplayName("Should register branch successfully")
     void deveCadastrarAgenciaComSucesso() {
         when(bankBranchRepository.existsNearbyBankBranches(10.0, -5.0, 0.1)).thenReturn(false);
-        when(bankBranchRepository.countComLock()).thenReturn(0L);
         when(bankBranchRepository.save(any(BankBranch.class))).thenReturn(agencia);
 
         RegisterBankBranchResponse response = bankBranchService.registerBankBranch(request);
@@ -66,7 +97,6 @@ class BankBranchServiceTest {
         assertEquals("Branch registered successfully!", response.mensagem());
 
         verify(bankBranchRepository).existsNearbyBankBranches(10.0, -5.0, 0.1);
-        verify(bankBranchRepository).countComLock();
         verify(bankBranchRepository).save(any(BankBranch.class));
     }
 
@@ -84,7 +114,6 @@ class BankBranchServiceTest {
                 .build();
         
         when(bankBranchRepository.existsNearbyBankBranches(15.0, -10.0, 0.1)).thenReturn(false);
-        when(bankBranchRepository.countComLock()).thenReturn(0L);
         when(bankBranchRepository.save(any(BankBranch.class))).thenReturn(agenciaEsperada);
 
         RegisterBankBranchResponse response = bankBranchService.registerBankBranch(request);
@@ -96,7 +125,6 @@ class BankBranchServiceTest {
         assertEquals(-10.0, response.posY());
 
         verify(bankBranchRepository).existsNearbyBankBranches(15.0, -10.0, 0.1);
-        verify(bankBranchRepository).countComLock();
         verify(bankBranchRepository).save(any(BankBranch.class));
     }
 
@@ -159,7 +187,6 @@ class BankBranchServiceTest {
     @DisplayName("Must allow registration when there is no nearby branch")
     void devePermitirCadastroQuandoNaoHaAgenciaProxima() {
         when(bankBranchRepository.existsNearbyBankBranches(10.0, -5.0, 0.1)).thenReturn(false);
-        when(bankBranchRepository.countComLock()).thenReturn(0L);
         when(bankBranchRepository.save(any(BankBranch.class))).thenReturn(agencia);
 
         RegisterBankBranchResponse response = bankBranchService.registerBankBranch(request);
@@ -176,7 +203,6 @@ class BankBranchServiceTest {
     void devePermitirCadastroQuandoAgenciaEstaNaDistanciaMinimaExata() {
         RegisterBankBranchRequest requestDistanciaExata = new RegisterBankBranchRequest(10.1, -5.0);
         when(bankBranchRepository.existsNearbyBankBranches(10.1, -5.0, 0.1)).thenReturn(false);
-        when(bankBranchRepository.countComLock()).thenReturn(0L);
         when(bankBranchRepository.save(any(BankBranch.class))).thenReturn(agencia);
 
         RegisterBankBranchResponse response = bankBranchService.registerBankBranch(requestDistanciaExata);
@@ -185,4 +211,235 @@ class BankBranchServiceTest {
         verify(bankBranchRepository).existsNearbyBankBranches(10.1, -5.0, 0.1);
         verify(bankBranchRepository).save(any(BankBranch.class));
     }
+
+    @Test
+    @DisplayName("Should answer distance searches from the spatial index when it is ready")
+    void deveBuscarAgenciasPeloIndiceEspacial() {
+        ReflectionTestUtils.setField(bankBranchService, "indiceHabilitado", true);
+        BranchDistances resultados = new BranchDistances(2);
+        resultados.add(1L, 5.0);
+        resultados.add(2L, 10.0);
+
+        when(spatialIndex.isReady()).thenReturn(true);
+        when(spatialIndex.findOrdered(0.0, 0.0)).thenReturn(resultados);
+
+        DistanceBankBranchResponse response = bankBranchService.findBankBranches(0.0, 0.0);
+
+        assertEquals(List.of("AGENCIA_1", "AGENCIA_2"), List.copyOf(response.agencias().keySet()));
+        assertEquals("distancia = 5.00", response.agencias().get("AGENCIA_1"));
+        assertEquals("distancia = 10.00", response.agencias().get("AGENCIA_2"));
+        verify(bankBranchRepository, never()).findNearbyBankBranches(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the database while the spatial index is not ready")
+    void deveBuscarAgenciasNoBancoQuandoIndiceNaoEstaPronto() {
+        ReflectionTestUtils.setField(bankBranchService, "indiceHabilitado", true);
+        Object[] resultado1 = {1L, "AGENCIA_1", 3.0, 4.0, java.sql.Timestamp.valueOf(LocalDateTime.now()), 5.0};
+
+        when(spatialIndex.isReady()).thenReturn(false);
+        when(bankBranchRepository.findNearbyBankBranches(0.0, 0.0)).thenReturn(List.<Object[]>of(resultado1));
+
+        DistanceBankBranchResponse response = bankBranchService.findBankBranches(0.0, 0.0);
+
+        assertEquals("distancia = 5.00", response.agencias().get("AGENCIA_1"));
+        verify(spatialIndex, never()).findOrdered(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should push k and raio into the radius query")
+    void deveBuscarAgenciasDentroDoRaioComLimite() {
+        Object[] resultado1 = {2L, "AGENCIA_2", 1.0, 1.0, java.sql.Timestamp.valueOf(LocalDateTime.now()), 1.41};
+
+        when(bankBranchRepository.findNearbyBankBranchesWithinRadius(0.0, 0.0, 2.0, 1))
+                .thenReturn(List.<Object[]>of(resultado1));
+
+        DistanciaResponse response = bankBranchService.findNearbyBankBranches(0.0, 0.0, 1, 2.0);
+
+        assertEquals(1, response.totalAgencias());
+        assertEquals("AGENCIA_2", response.agenciaMaisProxima());
+        assertEquals(1.41, response.menorDistancia(), 0.001);
+        verify(bankBranchRepository, never()).findNearbyBankBranches(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should read through the JDBC repository when it is selected")
+    void deveBuscarAgenciasPeloRepositorioJdbc() {
+        JdbcBankBranchReadRepository jdbcReadRepository = mock(JdbcBankBranchReadRepository.class);
+        ReflectionTestUtils.setField(bankBranchService, "jdbcReadRepository", jdbcReadRepository);
+        BranchDistanceMap agencias = new BranchDistanceMap(2);
+        agencias.add("AGENCIA_2", 1.41);
+        agencias.add("AGENCIA_1", 3.0);
+        when(jdbcReadRepository.findNearbyBankBranchesLimits(0.0, 0.0, 2)).thenReturn(agencias);
+
+        DistanciaResponse response = bankBranchService.findNearbyBankBranches(0.0, 0.0, 2, null);
+
+        assertEquals(2, response.totalAgencias());
+        assertEquals("AGENCIA_2", response.agenciaMaisProxima());
+        assertEquals(1.41, response.menorDistancia(), 0.001);
+        assertEquals("distancia = 3.00", response.agencias().get("AGENCIA_1"));
+        verifyNoInteractions(bankBranchRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject a non-positive k")
+    void deveRejeitarKInvalido() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bankBranchService.findNearbyBankBranches(0.0, 0.0, 0, null));
+    }
+
+    @Test
+    @DisplayName("Should stream every row to the consumer in database order")
+    void deveTransmitirAgenciasNaOrdemDoBanco() {
+        Object[] resultado1 = {1L, "AGENCIA_1", 0.0, 0.0, java.sql.Timestamp.valueOf(LocalDateTime.now()), 5.0};
+        Object[] resultado2 = {2L, "AGENCIA_2", 5.0, 5.0, java.sql.Timestamp.valueOf(LocalDateTime.now()), 7.071};
+
+        when(bankBranchRepository.streamNearbyBankBranches(0.0, 0.0)).thenReturn(Stream.of(resultado1, resultado2));
+
+        List<DistanceBankBranchLine> linhas = new ArrayList<>();
+        long total = bankBranchService.streamBankBranches(0.0, 0.0, linhas::add);
+
+        assertEquals(2, total);
+        assertEquals(List.of(
+                new DistanceBankBranchLine("AGENCIA_1", "distancia = 5.00"),
+                new DistanceBankBranchLine("AGENCIA_2", "distancia = 7.07")), linhas);
+    }
+
+    @Test
+    @DisplayName("Should return ids and unrounded distances in the compact representation")
+    void deveRetornarIdsEDistanciasNaRepresentacaoCompacta() {
+        Object[] resultado1 = {1L, "AGENCIA_1", 0.0, 0.0, java.sql.Timestamp.valueOf(LocalDateTime.now()), 5.0};
+        Object[] resultado2 = {2L, "AGENCIA_2", 5.0, 5.0, java.sql.Timestamp.valueOf(LocalDateTime.now()), 7.071};
+
+        when(bankBranchRepository.streamNearbyBankBranches(0.0, 0.0)).thenReturn(Stream.of(resultado1, resultado2));
+
+        CompactDistanceResponse response = bankBranchService.findBankBranchesCompact(0.0, 0.0);
+
+        assertArrayEquals(new long[]{1L, 2L}, response.ids());
+        assertArrayEquals(new double[]{5.0, 7.071}, response.distancias());
+    }
+
+    @Test
+    @DisplayName("Should answer every point of a batch from the spatial index in request order")
+    void deveResponderLoteDePontosPeloIndice() {
+        ReflectionTestUtils.setField(bankBranchService, "indiceHabilitado", true);
+        BranchDistances primeiro = new BranchDistances(1);
+        primeiro.add(3L, 1.5);
+        BranchDistances segundo = new BranchDistances(1);
+        segundo.add(7L, 0.25);
+        when(spatialIndex.isReady()).thenReturn(true);
+        when(spatialIndex.findNearest(aryEq(new double[]{1.0, 2.0}), aryEq(new double[]{0.0, 0.0}), eq(1), anyDouble()))
+                .thenReturn(new BranchDistances[]{primeiro, segundo});
+
+        DistanceBatchResponse response = bankBranchService.findNearbyBankBranchesBatch(new DistanceBatchRequest(
+                List.of(new DistanceBatchRequest.Ponto(1.0, 0.0), new DistanceBatchRequest.Ponto(2.0, 0.0)), 1));
+
+        assertEquals(2, response.totalPontos());
+        assertEquals("AGENCIA_3", response.resultados().get(0).agenciaMaisProxima());
+        assertEquals(1.0, response.resultados().get(0).posicaoUsuario().posX());
+        assertEquals("AGENCIA_7", response.resultados().get(1).agenciaMaisProxima());
+        assertEquals(0.25, response.resultados().get(1).menorDistancia());
+        verifyNoInteractions(bankBranchRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject an empty batch of points and invalid points")
+    void deveRejeitarLoteDePontosInvalido() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bankBranchService.findNearbyBankBranchesBatch(new DistanceBatchRequest(List.of(), null)));
+        IllegalArgumentException erro = assertThrows(IllegalArgumentException.class,
+                () -> bankBranchService.findNearbyBankBranchesBatch(new DistanceBatchRequest(
+                        List.of(new DistanceBatchRequest.Ponto(0.0, 0.0), new DistanceBatchRequest.Ponto(200.0, 0.0)), null)));
+        assertTrue(erro.getMessage().startsWith("Point 1:"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("Should register a batch checking proximity against existing branches and within the batch")
+    void deveCadastrarLoteVerificandoProximidade() {
+        when(bankBranchRepository.findPositionsInCells(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{20.0, 20.0}));
+        when(bankBranchRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<BankBranch> novas = invocation.getArgument(0);
+            long id = 10;
+            for (BankBranch nova : novas) {
+                // As BankBranchIdGenerator does on persist
+                nova.setId(id);
+                nova.setName(BankBranch.nomeDaAgencia(id++));
+            }
+            return novas;
+        });
+
+        RegisterBankBranchBatchResponse response = bankBranchService.registerBankBranches(List.of(
+                new RegisterBankBranchRequest(1.0, 1.0),
+                new RegisterBankBranchRequest(20.05, 20.0),
+                new RegisterBankBranchRequest(1.05, 1.0),
+                new RegisterBankBranchRequest(200.0, 1.0),
+                new RegisterBankBranchRequest(5.0, 5.0)
+        ));
+
+        assertEquals(2, response.totalCadastradas());
+        assertEquals(3, response.totalRejeitadas());
+        assertEquals(5, response.resultados().size());
+
+        assertEquals("AGENCIA_10", response.resultados().get(0).nome());
+        assertTrue(response.resultados().get(1).mensagem().startsWith("Error: There is already a branch close"));
+        assertTrue(response.resultados().get(2).mensagem().startsWith("Error: Another branch in this batch"));
+        assertEquals("Error: Position X must be between -180 and 180", response.resultados().get(3).mensagem());
+        assertEquals("AGENCIA_11", response.resultados().get(4).nome());
+        assertNull(response.resultados().get(1).id());
+
+        verify(bankBranchRepository, times(1)).findPositionsInCells(anyCollection());
+        verify(bankBranchRepository, never()).existsNearbyBankBranches(anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should reject an empty batch")
+    void deveRejeitarLoteVazio() {
+        assertThrows(IllegalArgumentException.class, () -> bankBranchService.registerBankBranches(List.of()));
+        verify(bankBranchRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Should answer distance searches through the result cache when it is enabled")
+    void deveBuscarAgenciasPeloCacheQuandoHabilitado() {
+        DistanceBankBranchResponse emCache = new DistanceBankBranchResponse(Map.of("AGENCIA_1", "distancia = 1.00"));
+
+        when(distanceQueryCache.isEnabled()).thenReturn(true);
+        when(distanceQueryCache.get(eq(1.0), eq(2.0), any())).thenReturn(emCache);
+
+        DistanceBankBranchResponse response = bankBranchService.findBankBranches(1.0, 2.0);
+
+        assertSame(emCache, response);
+        verify(bankBranchRepository, never()).findNearbyBankBranches(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should time registrations by outcome and count proximity rejections")
+    void deveMedirCadastrosPorResultado() {
+        when(bankBranchRepository.existsNearbyBankBranches(10.0, -5.0, 0.1)).thenReturn(false, true);
+        when(bankBranchRepository.save(any(BankBranch.class))).thenReturn(agencia);
+
+        bankBranchService.registerBankBranch(request);
+        assertThrows(IllegalArgumentException.class, () -> bankBranchService.registerBankBranch(request));
+        assertThrows(IllegalArgumentException.class,
+                () -> bankBranchService.registerBankBranch(new RegisterBankBranchRequest(null, 1.0)));
+
+        assertEquals(1, meterRegistry.get("bankbranch.register").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("bankbranch.register").tag("outcome", "too-close").timer().count());
+        assertEquals(1, meterRegistry.get("bankbranch.register").tag("outcome", "error").timer().count());
+        assertEquals(1.0, meterRegistry.get("bankbranch.proximity.rejections")
+                .tag("source", "single").tag("conflict", "existing").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should time failed distance searches with the error outcome")
+    void deveMedirBuscaComErro() {
+        when(bankBranchRepository.findNearbyBankBranches(1.0, 2.0)).thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(RuntimeException.class, () -> bankBranchService.findBankBranches(1.0, 2.0));
+
+        assertEquals(1, meterRegistry.get("bankbranch.find").tag("outcome", "error").timer().count());
+        assertTrue(meterRegistry.find("bankbranch.find").tag("outcome", "success").timers().isEmpty());
+    }
 }
@@ -0,0 +1,201 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.dto.RegisterBankBranchBatchResponse;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchDistances;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Write-behind registration tests")
+class BankBranchWriteBehindServiceTest {
+
+    @Mock
+    private BankBranchService bankBranchService;
+
+    @Mock
+    private BankBranchSpatialIndex spatialIndex;
+
+    private BankBranchWriteBehindService writeBehindService;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writeBehindService != null) {
+            writeBehindService.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should commit queued registrations in groups and complete each future with its result")
+    void deveConfirmarCadastrosEmGrupos() throws Exception {
+        AtomicLong proximoId = new AtomicLong();
+        when(bankBranchService.registerBankBranches(anyList())).thenAnswer(invocation -> {
+            List<RegisterBankBranchRequest> requests = invocation.getArgument(0);
+            List<RegisterBankBranchResponse> resultados = new ArrayList<>();
+            for (RegisterBankBranchRequest request : requests) {
+                long id = proximoId.incrementAndGet();
+                resultados.add(new RegisterBankBranchResponse(id, "AGENCIA_" + id,
+                        request.posX(), request.posY(), LocalDateTime.now()));
+            }
+            return new RegisterBankBranchBatchResponse(resultados, resultados.size(), 0);
+        });
+        writeBehindService = iniciar(100, 10, Duration.ofSeconds(5));
+
+        List<CompletableFuture<RegisterBankBranchResponse>> futuros = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futuros.add(writeBehindService.submit(new RegisterBankBranchRequest((double) i, 0.0)));
+        }
+
+        for (int i = 0; i < futuros.size(); i++) {
+            RegisterBankBranchResponse response = futuros.get(i).get(5, TimeUnit.SECONDS);
+            assertNotNull(response.id());
+            assertEquals((double) i, response.posX());
+        }
+        verify(bankBranchService, times(2)).registerBankBranches(argThat(grupo -> grupo.size() == 10));
+    }
+
+    @Test
+    @DisplayName("Should refuse registrations once the queue is full")
+    void deveRecusarQuandoFilaCheia() throws Exception {
+        CountDownLatch gravando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(bankBranchService.registerBankBranches(anyList())).thenAnswer(invocation -> {
+            gravando.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            List<RegisterBankBranchRequest> requests = invocation.getArgument(0);
+            List<RegisterBankBranchResponse> resultados = new ArrayList<>();
+            requests.forEach(request -> resultados.add(new RegisterBankBranchResponse(1L, "AGENCIA_1",
+                    request.posX(), request.posY(), LocalDateTime.now())));
+            return new RegisterBankBranchBatchResponse(resultados, resultados.size(), 0);
+        });
+        writeBehindService = iniciar(2, 1, Duration.ofMillis(1));
+
+        CompletableFuture<RegisterBankBranchResponse> primeiro = writeBehindService.submit(new RegisterBankBranchRequest(0.0, 0.0));
+        assertTrue(gravando.await(5, TimeUnit.SECONDS));
+        writeBehindService.submit(new RegisterBankBranchRequest(1.0, 0.0));
+        writeBehindService.submit(new RegisterBankBranchRequest(2.0, 0.0));
+
+        assertThrows(RejectedExecutionException.class,
+                () -> writeBehindService.submit(new RegisterBankBranchRequest(3.0, 0.0)));
+        assertEquals(2, writeBehindService.queueSize());
+
+        liberar.countDown();
+        assertNotNull(primeiro.get(5, TimeUnit.SECONDS).id());
+    }
+
+    @Test
+    @DisplayName("Should reject a registration close to an indexed branch without queuing it")
+    void deveRejeitarProximaDeAgenciaIndexada() throws InterruptedException {
+        BranchDistances proximas = new BranchDistances(1);
+        proximas.add(1L, 0.05);
+        when(spatialIndex.isReady()).thenReturn(true);
+        when(spatialIndex.findNearest(eq(10.0), eq(-5.0), eq(1), anyDouble())).thenReturn(proximas);
+        writeBehindService = iniciar(10, 10, Duration.ofMillis(1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> writeBehindService.submit(new RegisterBankBranchRequest(10.0, -5.0)));
+        assertEquals(0, writeBehindService.queueSize());
+
+        writeBehindService.stop();
+        verifyNoInteractions(bankBranchService);
+    }
+
+    @Test
+    @DisplayName("Should fail every future of a group whose transaction fails")
+    void deveFalharFuturosQuandoGrupoFalha() {
+        when(bankBranchService.registerBankBranches(anyList())).thenThrow(new IllegalStateException("Database unavailable"));
+        writeBehindService = iniciar(10, 10, Duration.ofMillis(1));
+
+        CompletableFuture<RegisterBankBranchResponse> futuro = writeBehindService.submit(new RegisterBankBranchRequest(0.0, 0.0));
+
+        ExecutionException erro = assertThrows(ExecutionException.class, () -> futuro.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, erro.getCause());
+    }
+
+    @Test
+    @DisplayName("Should refuse new registrations on shutdown and fail the queued ones the writer did not take")
+    void deveFalharPendentesQuandoGravadorNaoTerminaNoDesligamento() throws Exception {
+        CountDownLatch gravando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(bankBranchService.registerBankBranches(anyList())).thenAnswer(invocation -> {
+            gravando.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("Database unavailable");
+        });
+        writeBehindService = iniciar(10, 1, Duration.ofMillis(1), Duration.ofMillis(100));
+
+        writeBehindService.submit(new RegisterBankBranchRequest(0.0, 0.0));
+        assertTrue(gravando.await(5, TimeUnit.SECONDS));
+        CompletableFuture<RegisterBankBranchResponse> naFila = writeBehindService.submit(new RegisterBankBranchRequest(1.0, 0.0));
+
+        writeBehindService.stop();
+
+        ExecutionException erro = assertThrows(ExecutionException.class, () -> naFila.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, erro.getCause());
+        assertEquals(0, writeBehindService.queueSize());
+        assertThrows(RejectedExecutionException.class,
+                () -> writeBehindService.submit(new RegisterBankBranchRequest(2.0, 0.0)));
+        liberar.countDown();
+    }
+
+    @Test
+    @DisplayName("Should fail the group, the queue and new registrations when an Error stops the writer")
+    void deveEncerrarQuandoGravadorMorreComError() throws Exception {
+        CountDownLatch gravando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(bankBranchService.registerBankBranches(anyList())).thenAnswer(invocation -> {
+            gravando.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            throw new StackOverflowError();
+        });
+        writeBehindService = iniciar(10, 1, Duration.ofMillis(1));
+
+        CompletableFuture<RegisterBankBranchResponse> noGrupo = writeBehindService.submit(new RegisterBankBranchRequest(0.0, 0.0));
+        assertTrue(gravando.await(5, TimeUnit.SECONDS));
+        CompletableFuture<RegisterBankBranchResponse> naFila = writeBehindService.submit(new RegisterBankBranchRequest(1.0, 0.0));
+        liberar.countDown();
+
+        ExecutionException erroDoGrupo = assertThrows(ExecutionException.class, () -> noGrupo.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, erroDoGrupo.getCause());
+        ExecutionException erroDaFila = assertThrows(ExecutionException.class, () -> naFila.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, erroDaFila.getCause());
+        assertThrows(RejectedExecutionException.class,
+                () -> writeBehindService.submit(new RegisterBankBranchRequest(2.0, 0.0)));
+        verify(bankBranchService, times(1)).registerBankBranches(anyList());
+    }
+
+    private BankBranchWriteBehindService iniciar(int capacidade, int tamanhoGrupo, Duration intervalo) {
+        return iniciar(capacidade, tamanhoGrupo, intervalo, Duration.ofSeconds(5));
+    }
+
+    private BankBranchWriteBehindService iniciar(int capacidade, int tamanhoGrupo, Duration intervalo,
+                                                 Duration esperaDesligamento) {
+        BankBranchWriteBehindService service = new BankBranchWriteBehindService(bankBranchService, spatialIndex,
+                new SimpleMeterRegistry(), capacidade, tamanhoGrupo, intervalo, Duration.ofMillis(10),
+                esperaDesligamento);
+        service.start();
+        return service;
+    }
+}
@@ -0,0 +1,141 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.event.BankBranchRegisteredEvent;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchPoint;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.model.GridCell;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({BranchRefreshService.class, BankBranchSpatialIndex.class, DistanceQueryCache.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "bankbranch.replicacao.enabled=true",
+        "bankbranch.replicacao.tamanho-pagina=2"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Cross-node refresh tests")
+class BranchRefreshServiceTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Autowired
+    private BranchRefreshService refreshService;
+
+    @Autowired
+    private BankBranchSpatialIndex spatialIndex;
+
+    @Autowired
+    private DistanceQueryCache distanceQueryCache;
+
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        bankBranchRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should apply rows registered on another node once, across pages")
+    void deveAplicarAgenciasDeOutroNo() {
+        inserirComoOutroNo(9001L, 10.0, 10.0, INICIO);
+        spatialIndex.load(List.of(new BranchPoint(9001L, 10.0, 10.0, INICIO)));
+        // Nothing was registered elsewhere since the load
+        assertEquals(0, refreshService.refresh());
+
+        long versaoAnterior = distanceQueryCache.version();
+        inserirComoOutroNo(9002L, 20.0, 20.0, INICIO.plusSeconds(1));
+        inserirComoOutroNo(9003L, 30.0, 30.0, INICIO.plusSeconds(2));
+        inserirComoOutroNo(9004L, 40.0, 40.0, INICIO.plusSeconds(2));
+        inserirComoOutroNo(9005L, 50.0, 50.0, INICIO.plusSeconds(3));
+
+        assertEquals(4, refreshService.refresh());
+        assertEquals(5, spatialIndex.size());
+        assertEquals(versaoAnterior + 4, distanceQueryCache.version());
+        assertEquals(9004L, spatialIndex.findNearest(41.0, 41.0, 1, Double.POSITIVE_INFINITY).id(0));
+        assertEquals(0, refreshService.refresh());
+        assertEquals(4, meterRegistry.get("bankbranch.refresh.delay").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should apply rows that commit after newer ones within the margin")
+    void deveAplicarAgenciasGravadasForaDeOrdem() {
+        spatialIndex.load(List.of(new BranchPoint(9101L, 10.0, 10.0, INICIO)));
+        inserirComoOutroNo(9101L, 10.0, 10.0, INICIO);
+        inserirComoOutroNo(9102L, 20.0, 20.0, INICIO.plusSeconds(30));
+        assertEquals(1, refreshService.refresh());
+
+        // Created before the newest row seen, but only visible now
+        inserirComoOutroNo(9103L, 30.0, 30.0, INICIO.plusSeconds(10));
+        assertEquals(1, refreshService.refresh());
+        assertTrue(spatialIndex.contains(9103L));
+    }
+
+    @Test
+    @DisplayName("Should apply rows registered on another node with the spatial index disabled")
+    void deveAplicarAgenciasDeOutroNoSemIndice() {
+        // With bankbranch.index.enabled=false the index never loads
+        BranchRefreshService semIndice = new BranchRefreshService(bankBranchRepository, spatialIndex, eventPublisher,
+                new SimpleMeterRegistry(), Duration.ofMinutes(1), 2, false);
+        inserirComoOutroNo(9201L, 10.0, 10.0, INICIO);
+        inserirComoOutroNo(9202L, 20.0, 20.0, INICIO.plusSeconds(1));
+        // Rows already in the table when polling starts are not news
+        assertEquals(0, semIndice.refresh());
+
+        long versaoAnterior = distanceQueryCache.version();
+        inserirComoOutroNo(9203L, 30.0, 30.0, INICIO.plusSeconds(2));
+        inserirComoOutroNo(9204L, 40.0, 40.0, INICIO.plusSeconds(3));
+        inserirComoOutroNo(9205L, 50.0, 50.0, INICIO.plusSeconds(3));
+        assertEquals(3, semIndice.refresh());
+        assertEquals(versaoAnterior + 3, distanceQueryCache.version());
+        assertEquals(0, semIndice.refresh());
+
+        // Late commit within the margin, and a registration made on this node
+        inserirComoOutroNo(9206L, 60.0, 60.0, INICIO.plusSeconds(1));
+        BankBranch local = bankBranchRepository.saveAndFlush(BankBranch.builder().posX(70.0).posY(70.0).build());
+        // Not a bean here, so it gets the change feed by hand
+        semIndice.onBankBranchRegistered(new BankBranchRegisteredEvent(local));
+        long versaoComLocal = distanceQueryCache.version();
+        assertEquals(1, semIndice.refresh());
+        assertEquals(versaoComLocal + 1, distanceQueryCache.version());
+    }
+
+    private void inserirComoOutroNo(long id, double posX, double posY, LocalDateTime criacao) {
+        jdbcTemplate.update(
+                "INSERT INTO bankbranch (id, name, pos_x, pos_y, creation_date, grid_cell) VALUES (?, ?, ?, ?, ?, ?)",
+                id, BankBranch.nomeDaAgencia(id), posX, posY, Timestamp.valueOf(criacao), GridCell.of(posX, posY));
+    }
+}
@@ -0,0 +1,142 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.cache.DistanceQueryCache;
+import com.santander.bankbranch.dto.RegisterBankBranchRequest;
+import com.santander.bankbranch.dto.RegisterBankBranchResponse;
+import com.santander.bankbranch.index.BankBranchSpatialIndex;
+import com.santander.bankbranch.index.BranchDistances;
+import com.santander.bankbranch.index.BranchSnapshotFile;
+import com.santander.bankbranch.index.ColumnarBranchStore;
+import com.santander.bankbranch.model.BankBranch;
+import com.santander.bankbranch.repository.BankBranchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({BankBranchService.class, BankBranchSpatialIndex.class, DistanceQueryCache.class, SimpleMeterRegistry.class,
+        GridCellLocks.class, BranchSnapshotService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Branch snapshot warm start tests")
+// Restoring happens at startup, before Hibernate has taken a block of ids from bankbranch_seq
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class BranchSnapshotServiceTest {
+
+    @TempDir
+    static Path diretorio;
+
+    @Autowired
+    private BranchSnapshotService snapshotService;
+
+    @Autowired
+    private BankBranchService bankBranchService;
+
+    @Autowired
+    private BankBranchSpatialIndex spatialIndex;
+
+    @Autowired
+    private BankBranchRepository bankBranchRepository;
+
+    @DynamicPropertySource
+    static void propriedades(DynamicPropertyRegistry registry) {
+        registry.add("bankbranch.snapshot.enabled", () -> "true");
+        registry.add("bankbranch.snapshot.arquivo", () -> arquivo().toString());
+    }
+
+    @BeforeEach
+    @AfterEach
+    void limpar() throws Exception {
+        bankBranchRepository.deleteAll();
+        Files.deleteIfExists(arquivo());
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Should restore the database and the index from the snapshot and replay newer rows")
+    void deveRestaurarDoSnapshotEReaplicarNovasAgencias() throws Exception {
+        ColumnarBranchStore agencias = new ColumnarBranchStore();
+        LocalDateTime criacao = LocalDateTime.of(2025, 1, 1, 10, 0);
+        agencias.add(1001L, 10.0, 10.0, criacao);
+        agencias.add(1002L, 20.0, 20.0, criacao.plusMinutes(1));
+        agencias.add(1003L, 30.0, 30.0, criacao.plusMinutes(2));
+        BranchSnapshotFile.write(arquivo(), agencias);
+
+        snapshotService.restore();
+        assertEquals(3, bankBranchRepository.count());
+        assertEquals("AGENCIA_1002", bankBranchRepository.findById(1002L).orElseThrow().getName());
+
+        // Registered after the snapshot was written: only the database has it
+        BankBranch nova = bankBranchRepository.save(BankBranch.builder().posX(-50.0).posY(-50.0).build());
+        assertTrue(nova.getId() > 1003L);
+
+        bankBranchService.loadSpatialIndex();
+
+        assertEquals(4, spatialIndex.size());
+        BranchDistances maisProximas = spatialIndex.findNearest(-49.0, -49.0, 2, Double.POSITIVE_INFINITY);
+        assertEquals(nova.getId(), maisProximas.id(0));
+        assertEquals(1001L, maisProximas.id(1));
+
+        RegisterBankBranchResponse response = bankBranchService.registerBankBranch(new RegisterBankBranchRequest(60.0, 60.0));
+        assertTrue(response.id() > nova.getId());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Should write the index to the snapshot only when it changed")
+    void deveGravarSnapshotQuandoOIndiceMudou() throws Exception {
+        bankBranchRepository.save(BankBranch.builder().posX(1.0).posY(1.0).build());
+        bankBranchRepository.save(BankBranch.builder().posX(5.0).posY(5.0).build());
+        bankBranchService.loadSpatialIndex();
+
+        snapshotService.writeSnapshot();
+        assertEquals(spatialIndex.size(), BranchSnapshotFile.read(arquivo()).branches().size());
+
+        Files.delete(arquivo());
+        snapshotService.writeSnapshot();
+        assertFalse(Files.exists(arquivo()));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Should use the snapshot with a matching database and discard it otherwise")
+    void deveDescartarSnapshotQueNaoConfereComOBanco() throws Exception {
+        BankBranch primeira = bankBranchRepository.save(BankBranch.builder().posX(1.0).posY(1.0).build());
+        bankBranchRepository.save(BankBranch.builder().posX(5.0).posY(5.0).build());
+        bankBranchService.loadSpatialIndex();
+        BranchSnapshotFile.write(arquivo(), spatialIndex.snapshot());
+
+        snapshotService.restore();
+        assertNotNull(snapshotService.takeRestored());
+
+        // Same highest id, one row fewer: the snapshot would bring the deleted branch back
+        bankBranchRepository.deleteById(primeira.getId());
+        snapshotService.restore();
+        assertNull(snapshotService.takeRestored());
+        assertEquals(1, bankBranchRepository.count());
+    }
+
+    private static Path arquivo() {
+        return diretorio.resolve("branches.snapshot");
+    }
+}
@@ -0,0 +1,47 @@
+package com.santander.bankbranch.service;
+
+import com.santander.bankbranch.model.GridCell;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Grid cell lock tests")
+class GridCellLocksTest {
+
+    @Test
+    @DisplayName("Should spread the 3x3 neighbourhood of a cell over distinct stripes")
+    void deveEspalharVizinhancaEntreFaixas() {
+        GridCellLocks locks = new GridCellLocks(1024);
+        List<Long> vizinhanca = GridCell.vizinhanca(10.05, 10.05, 10.25, 10.25);
+
+        Set<Integer> faixas = new HashSet<>();
+        vizinhanca.forEach(celula -> faixas.add(locks.stripeOf(celula)));
+
+        assertEquals(9, vizinhanca.size());
+        assertEquals(9, faixas.size());
+        assertThrows(IllegalArgumentException.class, () -> new GridCellLocks(1000));
+    }
+
+    @Test
+    @DisplayName("Should block an overlapping neighbourhood until the lock is released")
+    void deveBloquearVizinhancaSobreposta() throws Exception {
+        GridCellLocks locks = new GridCellLocks(1024);
+        List<Long> primeira = GridCell.vizinhanca(10.0, 10.0, 10.2, 10.2);
+        List<Long> sobreposta = GridCell.vizinhanca(10.15, 10.15, 10.35, 10.35);
+
+        GridCellLocks.Bloqueio bloqueio = locks.lockForTransaction(primeira);
+        CompletableFuture<Void> outra = CompletableFuture.runAsync(() -> locks.lockForTransaction(sobreposta).close());
+
+        assertThrows(TimeoutException.class, () -> outra.get(200, TimeUnit.MILLISECONDS));
+        bloqueio.close();
+        outra.get(5, TimeUnit.SECONDS);
+    }
+}